@@ -0,0 +1,66 @@
+package com.yogabot;
+
+import com.yogabot.model.Schedule;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Общие данные бенчмарков: неделя расписания, JSON апдейтов Telegram и внедрение
+// зависимостей в @Autowired/@Value поля без поднятия Spring-контекста.
+public final class BenchmarkFixtures {
+
+    public static final long USER_ID = 123456789L;
+    public static final long CHAT_ID = 123456789L;
+
+    private BenchmarkFixtures() {
+    }
+
+    public static List<Schedule> week(LocalDate start) {
+        List<Schedule> week = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Schedule schedule = new Schedule(start.plusDays(i), LocalTime.of(8, 0), "Хатха-йога <утро>",
+                    LocalTime.of(19, 30), "Йога & медитация", i != 6);
+            schedule.setId(100L + i);
+            week.add(schedule);
+        }
+        return week;
+    }
+
+    public static String messageUpdateJson(String text) {
+        return "{\"update_id\":100000001,\"message\":{\"message_id\":42,\"date\":1741000000,"
+                + "\"from\":" + userJson() + ",\"chat\":{\"id\":" + CHAT_ID + ",\"type\":\"private\","
+                + "\"first_name\":\"Анна\",\"username\":\"anna_yoga\"},\"text\":\"" + text + "\"}}";
+    }
+
+    public static String callbackUpdateJson(String data) {
+        return "{\"update_id\":100000002,\"callback_query\":{\"id\":\"5550001\",\"from\":" + userJson() + ","
+                + "\"message\":{\"message_id\":43,\"date\":1741000000,\"chat\":{\"id\":" + CHAT_ID
+                + ",\"type\":\"private\"},\"text\":\"📋 Запись\"},\"chat_instance\":\"-100\","
+                + "\"data\":\"" + data + "\"}}";
+    }
+
+    private static String userJson() {
+        return "{\"id\":" + USER_ID + ",\"is_bot\":false,\"first_name\":\"Анна\",\"last_name\":\"Иванова\","
+                + "\"username\":\"anna_yoga\",\"language_code\":\"ru\"}";
+    }
+
+    public static void inject(Object target, String fieldName, Object value) {
+        Class<?> type = target.getClass();
+        while (type != null) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                type = type.getSuperclass();
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot inject " + fieldName, e);
+            }
+        }
+        throw new IllegalArgumentException("No field " + fieldName + " in " + target.getClass());
+    }
+}
\ No newline at end of file
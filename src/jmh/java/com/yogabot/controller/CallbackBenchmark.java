@@ -0,0 +1,162 @@
+package com.yogabot.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yogabot.BenchmarkFixtures;
+import com.yogabot.model.BotUser;
+import com.yogabot.model.Schedule;
+import com.yogabot.service.BotService;
+import com.yogabot.service.SeatEngine;
+import com.yogabot.service.SupabaseService;
+import com.yogabot.util.CallbackData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Разбор колбэков в BotController.onWebhookUpdateReceived -> CallbackRouter -> обработчик.
+// SupabaseService заменен заглушкой, поэтому в результат входят только разбор данных,
+// сборка ответа и метрика bot.callback. text* — старый текстовый формат из уже отправленных сообщений.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallbackBenchmark {
+
+    private BotController controller;
+
+    private Update subscribe;
+    private Update textSubscribe;
+    private Update legacySubscribe;
+    private Update unsubscribe;
+    private Update deleteDay;
+    private Update textDeleteDay;
+    private Update backToMain;
+
+    private String compactData;
+    private String textData;
+
+    static final class StubSupabaseService extends SupabaseService {
+        private final Schedule schedule;
+
+        StubSupabaseService(Schedule schedule) {
+            this.schedule = schedule;
+        }
+
+        @Override
+        public void saveOrUpdateBotUser(BotUser botUser) {
+        }
+
+        @Override
+        public Schedule getScheduleById(Long id) {
+            return schedule;
+        }
+
+        @Override
+        public boolean subscribeToClass(Long telegramId, Long scheduleId, String classType, LocalDate classDate) {
+            return true;
+        }
+
+        @Override
+        public boolean unsubscribeFromClass(Long telegramId, Long scheduleId, String classType) {
+            return true;
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        List<Schedule> week = BenchmarkFixtures.week(LocalDate.of(2025, 3, 3));
+        SupabaseService supabase = new StubSupabaseService(week.get(1));
+
+        BotService botService = new BotService();
+        BenchmarkFixtures.inject(botService, "supabaseService", supabase);
+
+        controller = new BotController("http://localhost/bot");
+        BenchmarkFixtures.inject(controller, "supabaseService", supabase);
+        BenchmarkFixtures.inject(controller, "botService", botService);
+        BenchmarkFixtures.inject(controller, "meterRegistry", new SimpleMeterRegistry());
+
+        // Без лимита мест: reserve сразу отвечает UNLIMITED и не обращается к Supabase
+        SeatEngine seatEngine = new SeatEngine();
+        BenchmarkFixtures.inject(seatEngine, "capacity", 0);
+        BenchmarkFixtures.inject(controller, "seatEngine", seatEngine);
+
+        ObjectMapper mapper = new ObjectMapper();
+        LocalDate day = LocalDate.of(2025, 3, 4);
+        compactData = CallbackData.subscribe("morning", 101, day);
+        textData = "subscribe_morning_101_20250304";
+
+        subscribe = callback(mapper, compactData);
+        textSubscribe = callback(mapper, textData);
+        legacySubscribe = callback(mapper, "subscribe_morning_101");
+        unsubscribe = callback(mapper, CallbackData.unsubscribe("evening", 101, day));
+        deleteDay = callback(mapper, CallbackData.day(CallbackData.Op.DELETE_DAY, day));
+        textDeleteDay = callback(mapper, "delete_day_2025-03-04");
+        backToMain = callback(mapper, CallbackData.of(CallbackData.Op.BACK_TO_MAIN));
+    }
+
+    private static Update callback(ObjectMapper mapper, String data) throws Exception {
+        return mapper.readValue(BenchmarkFixtures.callbackUpdateJson(data), Update.class);
+    }
+
+    @Benchmark
+    public BotApiMethod<?> subscribe() {
+        return controller.onWebhookUpdateReceived(subscribe);
+    }
+
+    @Benchmark
+    public BotApiMethod<?> textSubscribe() {
+        return controller.onWebhookUpdateReceived(textSubscribe);
+    }
+
+    // Самый старый формат без даты: дата берется из getScheduleById
+    @Benchmark
+    public BotApiMethod<?> legacySubscribe() {
+        return controller.onWebhookUpdateReceived(legacySubscribe);
+    }
+
+    @Benchmark
+    public BotApiMethod<?> unsubscribe() {
+        return controller.onWebhookUpdateReceived(unsubscribe);
+    }
+
+    @Benchmark
+    public BotApiMethod<?> deleteDay() {
+        return controller.onWebhookUpdateReceived(deleteDay);
+    }
+
+    @Benchmark
+    public BotApiMethod<?> textDeleteDay() {
+        return controller.onWebhookUpdateReceived(textDeleteDay);
+    }
+
+    @Benchmark
+    public BotApiMethod<?> backToMain() {
+        return controller.onWebhookUpdateReceived(backToMain);
+    }
+
+    // Только разбор callback_data
+    @Benchmark
+    public CallbackData decodeCompact() {
+        return CallbackData.decode(compactData);
+    }
+
+    @Benchmark
+    public CallbackData decodeText() {
+        return CallbackData.decode(textData);
+    }
+}
\ No newline at end of file
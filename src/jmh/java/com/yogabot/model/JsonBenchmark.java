@@ -0,0 +1,77 @@
+package com.yogabot.model;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.yogabot.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// Десериализация входящих данных: недельный ответ PostgREST (Schedule[]) и тело вебхука Telegram (Update).
+// Маппер настроен как в приложении: JavaTimeModule и без падения на неизвестных полях.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private ObjectMapper mapper;
+    private ObjectReader scheduleReader;
+    private ObjectReader updateReader;
+
+    private byte[] weekJson;
+    private byte[] messageUpdateJson;
+    private byte[] callbackUpdateJson;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        scheduleReader = mapper.readerFor(Schedule[].class);
+        updateReader = mapper.readerFor(Update.class);
+
+        weekJson = mapper.writeValueAsBytes(BenchmarkFixtures.week(LocalDate.of(2025, 3, 3)));
+        messageUpdateJson = BenchmarkFixtures.messageUpdateJson("📅 Расписание").getBytes(StandardCharsets.UTF_8);
+        callbackUpdateJson = BenchmarkFixtures.callbackUpdateJson("2Sm101:20250304")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Schedule[] weekSchedule() throws IOException {
+        return scheduleReader.readValue(weekJson);
+    }
+
+    // Для сравнения: поиск десериализатора через ObjectMapper на каждом вызове
+    @Benchmark
+    public Schedule[] weekScheduleViaMapper() throws IOException {
+        return mapper.readValue(weekJson, Schedule[].class);
+    }
+
+    @Benchmark
+    public Update messageUpdate() throws IOException {
+        return updateReader.readValue(messageUpdateJson);
+    }
+
+    @Benchmark
+    public Update callbackUpdate() throws IOException {
+        return updateReader.readValue(callbackUpdateJson);
+    }
+}
\ No newline at end of file
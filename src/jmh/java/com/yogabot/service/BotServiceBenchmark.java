@@ -0,0 +1,112 @@
+package com.yogabot.service;
+
+import com.yogabot.BenchmarkFixtures;
+import com.yogabot.model.Schedule;
+import com.yogabot.util.CallbackData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// BotService с заглушкой вместо SupabaseService: измеряется только путь внутри бота.
+// uncached* — рендеринг при каждом вызове (кэш представлений всегда пуст), cached* — попадание в кэш.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BotServiceBenchmark {
+
+    private BotService uncached;
+    private BotService cached;
+    private LocalDate tomorrow;
+
+    // Отдает неделю из памяти, не трогая сеть, кэш и журнал
+    static final class StubSupabaseService extends SupabaseService {
+        private final List<Schedule> week;
+
+        StubSupabaseService(List<Schedule> week) {
+            this.week = week;
+        }
+
+        @Override
+        public List<Schedule> getWeeklySchedule(LocalDate startOfWeek) {
+            return week;
+        }
+
+        @Override
+        public Schedule getScheduleByDate(LocalDate date) {
+            return week.get(1);
+        }
+    }
+
+    static final class NoRenderCache extends ScheduleRenderCache {
+        @Override
+        public <T> T get(String kind, LocalDate start, long version) {
+            return null;
+        }
+
+        @Override
+        public void put(String kind, LocalDate start, long version, Object value) {
+        }
+    }
+
+    @Setup
+    public void setup() {
+        tomorrow = LocalDate.now().plusDays(1);
+        SupabaseService supabase = new StubSupabaseService(BenchmarkFixtures.week(LocalDate.now()));
+
+        ScheduleRenderCache renderCache = new ScheduleRenderCache();
+        BenchmarkFixtures.inject(renderCache, "ttlMinutes", 30L);
+
+        uncached = botService(supabase, new NoRenderCache());
+        cached = botService(supabase, renderCache);
+    }
+
+    private static BotService botService(SupabaseService supabase, ScheduleRenderCache renderCache) {
+        BotService service = new BotService();
+        BenchmarkFixtures.inject(service, "supabaseService", supabase);
+        BenchmarkFixtures.inject(service, "scheduleCache", new ScheduleCache());
+        BenchmarkFixtures.inject(service, "renderCache", renderCache);
+        return service;
+    }
+
+    @Benchmark
+    public String uncachedWeeklySchedule() {
+        return uncached.getWeeklySchedule();
+    }
+
+    @Benchmark
+    public String cachedWeeklySchedule() {
+        return cached.getWeeklySchedule();
+    }
+
+    // Уведомление на завтра с кнопками записи (2S<type><id>:<date>)
+    @Benchmark
+    public SendMessage notificationMessage() {
+        return uncached.createNotificationMessage(tomorrow);
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup uncachedEditKeyboard() {
+        return uncached.getScheduleKeyboard(CallbackData.Op.EDIT_DAY);
+    }
+
+    @Benchmark
+    public InlineKeyboardMarkup cachedEditKeyboard() {
+        return cached.getScheduleKeyboard(CallbackData.Op.EDIT_DAY);
+    }
+}
\ No newline at end of file
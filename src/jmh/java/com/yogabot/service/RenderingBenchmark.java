@@ -0,0 +1,144 @@
+package com.yogabot.service;
+
+import com.yogabot.model.Schedule;
+import com.yogabot.util.HtmlEscaper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Сравнение шаблонного рендеринга с прежней конкатенацией (legacy*).
+// Аллокации смотреть профилировщиком gc: gc.alloc.rate.norm — байт на операцию.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderingBenchmark {
+
+    private List<Schedule> week;
+    private List<String> attendees;
+    private String className;
+
+    @Setup
+    public void setup() {
+        LocalDate start = LocalDate.of(2025, 3, 3);
+        week = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Schedule schedule = new Schedule(start.plusDays(i), LocalTime.of(8, 0), "Хатха-йога <утро>",
+                    LocalTime.of(19, 30), "Йога & медитация", i != 6);
+            schedule.setId(100L + i);
+            week.add(schedule);
+        }
+
+        attendees = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            attendees.add(i % 3 == 0 ? "@user_" + i : "Имя Фамилия <" + i + ">");
+        }
+        className = "Виньяса-флоу & дыхательные практики <для начинающих>";
+    }
+
+    @Benchmark
+    public String weeklySchedule() {
+        return BotService.renderWeeklySchedule(week);
+    }
+
+    @Benchmark
+    public String legacyWeeklySchedule() {
+        StringBuilder sb = new StringBuilder("📅 <b>Расписание на ближайшие 7 дней:</b>\n\n");
+        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+        for (Schedule schedule : week) {
+            sb.append("🔸 <b>").append(legacyDayName(schedule.getDate().getDayOfWeek()))
+                    .append(", ").append(schedule.getDate().format(dateFormatter)).append(":</b>\n");
+            if (Boolean.TRUE.equals(schedule.getActive())) {
+                sb.append("   🌅 ").append(schedule.getMorningTime()).append(" - ").append(legacyEscape(schedule.getMorningClass())).append("\n");
+                sb.append("   🌇 ").append(schedule.getEveningTime()).append(" - ").append(legacyEscape(schedule.getEveningClass())).append("\n");
+            } else {
+                sb.append("   😴 Отдых / Занятий нет.\n");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String weeklyAttendance() {
+        StringBuilder sb = new StringBuilder(1024).append("📊 <b>Записи на ближайшие 7 дней:</b>\n\n");
+        for (Schedule schedule : week) {
+            BotService.appendDaySection(sb, schedule.getDate(), null, schedule, attendees, attendees);
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String legacyWeeklyAttendance() {
+        StringBuilder sb = new StringBuilder("📊 <b>Записи на ближайшие 7 дней:</b>\n\n");
+        for (Schedule schedule : week) {
+            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd.MM");
+            sb.append("🔹 <b>").append(legacyDayName(schedule.getDate().getDayOfWeek())).append(" (")
+                    .append(schedule.getDate().format(dateFormatter)).append(")</b>\n");
+            if (!Boolean.TRUE.equals(schedule.getActive())) {
+                sb.append("   <i>Занятий нет.</i>\n\n");
+                continue;
+            }
+            sb.append("   🌅 Утро (").append(schedule.getMorningTime()).append("): ").append(legacyEscape(schedule.getMorningClass())).append("\n");
+            sb.append(legacyUserList()).append("\n");
+            sb.append("   🌇 Вечер (").append(schedule.getEveningTime()).append("): ").append(legacyEscape(schedule.getEveningClass())).append("\n");
+            sb.append(legacyUserList()).append("\n");
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String escape() {
+        return HtmlEscaper.appendEscaped(new StringBuilder(1024), className).toString();
+    }
+
+    @Benchmark
+    public String legacyEscape() {
+        return legacyEscape(className);
+    }
+
+    private String legacyUserList() {
+        StringBuilder userList = new StringBuilder();
+        for (int i = 0; i < attendees.size(); i++) {
+            userList.append("      ").append(i + 1).append(". ").append(legacyEscape(attendees.get(i))).append("\n");
+        }
+        return userList.toString();
+    }
+
+    private static String legacyEscape(String text) {
+        if (text == null) return "";
+        return text.replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;");
+    }
+
+    private static String legacyDayName(DayOfWeek dayOfWeek) {
+        switch (dayOfWeek) {
+            case MONDAY: return "Понедельник";
+            case TUESDAY: return "Вторник";
+            case WEDNESDAY: return "Среда";
+            case THURSDAY: return "Четверг";
+            case FRIDAY: return "Пятница";
+            case SATURDAY: return "Суббота";
+            default: return "Воскресенье";
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.yogabot.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardRemove;
+
+import java.util.concurrent.TimeUnit;
+
+// Построение reply-клавиатур KeyboardUtil, которые уходят почти в каждом ответе на команду меню
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyboardBenchmark {
+
+    @Benchmark
+    public ReplyKeyboardMarkup mainKeyboard() {
+        return KeyboardUtil.getMainKeyboard(false);
+    }
+
+    @Benchmark
+    public ReplyKeyboardMarkup mainKeyboardAdmin() {
+        return KeyboardUtil.getMainKeyboard(true);
+    }
+
+    @Benchmark
+    public ReplyKeyboardMarkup editKeyboard() {
+        return KeyboardUtil.getEditKeyboard();
+    }
+
+    @Benchmark
+    public ReplyKeyboardRemove removeKeyboard() {
+        return KeyboardUtil.removeKeyboard();
+    }
+}
\ No newline at end of file
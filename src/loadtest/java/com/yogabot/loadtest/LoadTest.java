@@ -0,0 +1,228 @@
+package com.yogabot.loadtest;
+
+import com.yogabot.YogaBotApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Нагрузочный тест целиком: бот поднимается в этом же процессе, Supabase и Telegram заменены
+// локальными заглушками, апдейты шлются POST-запросами в WebhookController.
+//   mvn -Ploadtest compile exec:exec -Dloadtest.args="scenario=storm updates=20000 concurrency=64"
+// Параметры (key=value): scenario=menu|storm|channel|mixed, updates, warmup, concurrency, users, async=true|false,
+// supabase-latency-ms, supabase-jitter-ms, supabase-error-rate, telegram-latency-ms, seed.
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        String scenario = options.getOrDefault("scenario", "mixed");
+        int updates = Integer.parseInt(options.getOrDefault("updates", "10000"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "1000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        int users = Integer.parseInt(options.getOrDefault("users", "2000"));
+        boolean async = Boolean.parseBoolean(options.getOrDefault("async", "true"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        PostgrestStub supabase = new PostgrestStub(
+                Long.parseLong(options.getOrDefault("supabase-latency-ms", "30")),
+                Long.parseLong(options.getOrDefault("supabase-jitter-ms", "20")),
+                Double.parseDouble(options.getOrDefault("supabase-error-rate", "0")));
+        TelegramStub telegram = new TelegramStub(Long.parseLong(options.getOrDefault("telegram-latency-ms", "20")));
+        supabase.start();
+        telegram.start();
+
+        Path journalDir = Files.createTempDirectory("yoga-bot-loadtest");
+        ConfigurableApplicationContext context = SpringApplication.run(YogaBotApplication.class,
+                "--server.port=0",
+                "--supabase.url=" + supabase.getUrl(),
+                "--supabase.key=loadtest",
+                "--telegram.bot.token=loadtest",
+                "--telegram.bot.username=loadtest_bot",
+                "--telegram.channel.id=@loadtest",
+                "--telegram.api.base-url=" + telegram.getApiUrl(),
+                "--app.url=" + telegram.getBaseUrl(),
+                "--journal.path=" + journalDir.resolve("subscriptions.journal"),
+                "--journal.dead-letter-path=" + journalDir.resolve("subscriptions.dead"),
+                "--webhook.async.enabled=" + async,
+                // BotController и NotificationService ссылаются друг на друга через поля
+                "--spring.main.allow-circular-references=true",
+                // Лимиты Telegram здесь не проверяются: иначе пропускная способность упрется в токен-бакеты
+                "--telegram.send.global-rate=1000000",
+                "--telegram.send.per-chat-rate=1000000",
+                "--telegram.send.per-chat-burst=1000000",
+                "--logging.level.com.yogabot=WARN");
+
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(concurrency);
+        try {
+            String webhookUrl = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port") + "/";
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(clientExecutor)
+                    .build();
+            awaitReady(client, webhookUrl + "actuator/health/readiness");
+
+            LocalDate tomorrow = LocalDate.now().plusDays(1);
+            Long scheduleId = supabase.scheduleIdFor(tomorrow.toString());
+            if (scheduleId == null) {
+                throw new IllegalStateException("Schedule for " + tomorrow + " was not initialized");
+            }
+            UpdateGenerator generator = new UpdateGenerator(seed, users, scheduleId, tomorrow);
+
+            System.out.printf("Warming up with %d updates...%n", warmup);
+            run(client, webhookUrl, generator.generate(scenario, warmup), concurrency);
+            awaitQuiet(supabase, telegram);
+
+            supabase.resetCounters();
+            telegram.resetCounters();
+            List<byte[]> batch = generator.generate(scenario, updates);
+            System.out.printf("Sending %d '%s' updates with concurrency %d (async=%s)...%n", updates, scenario, concurrency, async);
+
+            long start = System.nanoTime();
+            Result result = run(client, webhookUrl, batch, concurrency);
+            long sent = System.nanoTime();
+            long drained = awaitQuiet(supabase, telegram);
+
+            report(result, updates, start, sent, drained, supabase, telegram);
+        } finally {
+            clientExecutor.shutdownNow();
+            context.close();
+            supabase.stop();
+            telegram.stop();
+        }
+    }
+
+    private static final class Result {
+        private final long[] latencies;
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        private Result(int count) {
+            latencies = new long[count];
+        }
+    }
+
+    private static Result run(HttpClient client, String url, List<byte[]> updates, int concurrency) throws InterruptedException {
+        Result result = new Result(updates.size());
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int w = 0; w < concurrency; w++) {
+            workers.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < updates.size()) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                            .timeout(Duration.ofSeconds(30))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(updates.get(i)))
+                            .build();
+                    long begin = System.nanoTime();
+                    try {
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        (status == 200 ? result.ok : status == 429 ? result.rejected : result.failed).increment();
+                    } catch (Exception e) {
+                        result.failed.increment();
+                    }
+                    result.latencies[i] = System.nanoTime() - begin;
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        return result;
+    }
+
+    private static void awaitReady(HttpClient client, String url) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        while (System.nanoTime() < deadline) {
+            try {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) return;
+            } catch (Exception e) {
+                // Приложение еще стартует
+            }
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+        throw new IllegalStateException("Bot did not become ready: " + url);
+    }
+
+    // Ждет, пока фоновая обработка (асинхронные ответы, отправка журнала) перестанет обращаться к заглушкам.
+    // Окно тишины больше интервала отправки журнала, чтобы не остановиться между двумя его проходами.
+    private static long awaitQuiet(PostgrestStub supabase, TelegramStub telegram) throws InterruptedException {
+        long quietNanos = TimeUnit.MILLISECONDS.toNanos(2500);
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        long lastCalls = -1;
+        long lastChange = System.nanoTime();
+        while (System.nanoTime() < deadline) {
+            long calls = supabase.totalCalls() + telegram.totalCalls();
+            long now = System.nanoTime();
+            if (calls != lastCalls) {
+                lastCalls = calls;
+                lastChange = now;
+            } else if (now - lastChange >= quietNanos) {
+                return lastChange;
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        return System.nanoTime();
+    }
+
+    private static void report(Result result, int updates, long start, long sent, long drained,
+                               PostgrestStub supabase, TelegramStub telegram) {
+        long[] sorted = result.latencies.clone();
+        Arrays.sort(sorted);
+        double sendSeconds = (sent - start) / 1e9;
+        double totalSeconds = (Math.max(drained, sent) - start) / 1e9;
+
+        System.out.println();
+        System.out.println("=== Load test report ===");
+        System.out.printf("Updates:              %d (ok=%d, 429=%d, failed=%d)%n",
+                updates, result.ok.sum(), result.rejected.sum(), result.failed.sum());
+        System.out.printf("Accepted throughput:  %.1f updates/s (%.2f s to send)%n", updates / sendSeconds, sendSeconds);
+        System.out.printf("Processed throughput: %.1f updates/s (%.2f s until background work drained)%n",
+                updates / totalSeconds, totalSeconds);
+        System.out.printf("Webhook latency ms:   p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0.0);
+        System.out.printf("Supabase calls:       %d (%.3f per update, %d injected errors)%n",
+                supabase.totalCalls(), (double) supabase.totalCalls() / updates, supabase.injectedErrors());
+        supabase.callsSnapshot().forEach((key, count) -> System.out.printf("    %-28s %d%n", key, count));
+        System.out.printf("Telegram calls:       %d (%.3f per update)%n",
+                telegram.totalCalls(), (double) telegram.totalCalls() / updates);
+        telegram.callsSnapshot().forEach((key, count) -> System.out.printf("    %-28s %d%n", key, count));
+        System.out.printf("Subscriptions in stub: %d%n", supabase.rowCount("subscriptions"));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(sorted.length * percentile) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq).replaceFirst("^--", ""), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+}
\ No newline at end of file
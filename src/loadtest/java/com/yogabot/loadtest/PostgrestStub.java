@@ -0,0 +1,438 @@
+package com.yogabot.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Локальная замена PostgREST для таблиц schedule, bot_users и subscriptions. Строки хранятся в памяти.
+// Поддерживается то, что использует SupabaseService: фильтры eq/gte/lte/in, or=(and(...)),
+// on_conflict + Prefer resolution/return, Range, limit, select по колонкам и встраивание
+// subscriptions(bot_users(...)) в schedule. Задержка и ошибки 503 добавляются перед обработкой запроса.
+public class PostgrestStub {
+
+    private static final String PREFIX = "/rest/v1/";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+
+    private final Map<String, List<Map<String, Object>>> tables = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong(1000);
+
+    // Запросы по ключу "METHOD table"
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final LongAdder injectedErrors = new LongAdder();
+
+    public PostgrestStub(long latencyMs, long jitterMs, double errorRate) throws IOException {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+        for (String table : new String[]{"schedule", "bot_users", "subscriptions"}) {
+            tables.put(table, new ArrayList<>());
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+        server.createContext(PREFIX, this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long totalCalls() {
+        return calls.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public Map<String, Long> callsSnapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        calls.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> snapshot.put(entry.getKey(), entry.getValue().sum()));
+        return snapshot;
+    }
+
+    public long injectedErrors() {
+        return injectedErrors.sum();
+    }
+
+    public void resetCounters() {
+        calls.clear();
+        injectedErrors.reset();
+    }
+
+    public Long scheduleIdFor(String date) {
+        List<Map<String, Object>> rows = tables.get("schedule");
+        synchronized (rows) {
+            for (Map<String, Object> row : rows) {
+                if (date.equals(row.get("date"))) {
+                    return ((Number) row.get("id")).longValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    public int rowCount(String table) {
+        List<Map<String, Object>> rows = tables.get(table);
+        synchronized (rows) {
+            return rows.size();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String table = exchange.getRequestURI().getPath().substring(PREFIX.length());
+            String method = exchange.getRequestMethod();
+            calls.computeIfAbsent(method + " " + table, key -> new LongAdder()).increment();
+
+            injectLatency();
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.increment();
+                respond(exchange, 503, "{\"message\":\"injected failure\"}");
+                return;
+            }
+
+            List<Map<String, Object>> rows = tables.get(table);
+            if (rows == null) {
+                respond(exchange, 404, "{\"message\":\"relation " + table + " does not exist\"}");
+                return;
+            }
+
+            List<String[]> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String prefer = Objects.toString(exchange.getRequestHeaders().getFirst("Prefer"), "");
+            switch (method) {
+                case "GET":
+                    handleGet(exchange, table, rows, query);
+                    break;
+                case "POST":
+                    handlePost(exchange, table, rows, query, prefer);
+                    break;
+                case "PATCH":
+                    handlePatch(exchange, rows, query, prefer);
+                    break;
+                case "DELETE":
+                    synchronized (rows) {
+                        rows.removeIf(row -> matches(row, query));
+                    }
+                    respond(exchange, 204, null);
+                    break;
+                default:
+                    respond(exchange, 405, "{\"message\":\"method not allowed\"}");
+            }
+        } catch (Exception e) {
+            respond(exchange, 500, "{\"message\":\"" + e.getClass().getSimpleName() + "\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleGet(HttpExchange exchange, String table, List<Map<String, Object>> rows,
+                           List<String[]> query) throws IOException {
+        List<Map<String, Object>> result = new ArrayList<>();
+        synchronized (rows) {
+            for (Map<String, Object> row : rows) {
+                if (matches(row, query)) {
+                    result.add(new LinkedHashMap<>(row));
+                }
+            }
+        }
+
+        String order = param(query, "order");
+        if (order != null) {
+            String column = order.split("\\.")[0];
+            result.sort((a, b) -> compare(a.get(column), b.get(column)));
+        }
+
+        int from = 0;
+        int to = result.size() - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.contains("-")) {
+            String[] bounds = range.split("-");
+            from = Integer.parseInt(bounds[0].trim());
+            to = Math.min(to, Integer.parseInt(bounds[1].trim()));
+        }
+        String limit = param(query, "limit");
+        if (limit != null) {
+            to = Math.min(to, from + Integer.parseInt(limit) - 1);
+        }
+        result = from <= to ? new ArrayList<>(result.subList(from, to + 1)) : new ArrayList<>();
+
+        String select = param(query, "select");
+        if ("schedule".equals(table) && select != null && select.contains("subscriptions(")) {
+            embedSubscriptions(result);
+        } else if (select != null && !select.contains("*")) {
+            project(result, select.split(","));
+        }
+
+        exchange.getResponseHeaders().set("Content-Range", result.isEmpty() ? "*/*" : from + "-" + (from + result.size() - 1) + "/*");
+        respond(exchange, 200, mapper.writeValueAsString(result));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handlePost(HttpExchange exchange, String table, List<Map<String, Object>> rows,
+                            List<String[]> query, String prefer) throws IOException {
+        Object body = readBody(exchange);
+        List<Map<String, Object>> incoming = body instanceof List
+                ? (List<Map<String, Object>>) body
+                : Collections.singletonList((Map<String, Object>) body);
+
+        String onConflict = param(query, "on_conflict");
+        String[] keys = onConflict != null ? onConflict.split(",") : new String[0];
+        boolean merge = prefer.contains("merge-duplicates");
+
+        List<Map<String, Object>> written = new ArrayList<>();
+        synchronized (rows) {
+            for (Map<String, Object> values : incoming) {
+                Map<String, Object> existing = keys.length > 0 ? findByKeys(rows, keys, values) : null;
+                if (existing != null) {
+                    if (merge) {
+                        existing.putAll(values);
+                        written.add(new LinkedHashMap<>(existing));
+                    } else if (!prefer.contains("ignore-duplicates")) {
+                        respond(exchange, 409, "{\"code\":\"23505\",\"message\":\"duplicate key value\"}");
+                        return;
+                    }
+                    continue;
+                }
+                Map<String, Object> row = new LinkedHashMap<>(values);
+                if (!"bot_users".equals(table)) {
+                    row.put("id", ids.incrementAndGet());
+                }
+                rows.add(row);
+                written.add(new LinkedHashMap<>(row));
+            }
+        }
+
+        if (prefer.contains("return=representation")) {
+            respond(exchange, 201, mapper.writeValueAsString(written));
+        } else {
+            respond(exchange, 201, null);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handlePatch(HttpExchange exchange, List<Map<String, Object>> rows,
+                             List<String[]> query, String prefer) throws IOException {
+        Map<String, Object> values = (Map<String, Object>) readBody(exchange);
+        List<Map<String, Object>> updated = new ArrayList<>();
+        synchronized (rows) {
+            for (Map<String, Object> row : rows) {
+                if (matches(row, query)) {
+                    row.putAll(values);
+                    updated.add(new LinkedHashMap<>(row));
+                }
+            }
+        }
+        if (prefer.contains("return=representation")) {
+            respond(exchange, 200, mapper.writeValueAsString(updated));
+        } else {
+            respond(exchange, 204, null);
+        }
+    }
+
+    private void embedSubscriptions(List<Map<String, Object>> schedules) {
+        List<Map<String, Object>> subscriptions = tables.get("subscriptions");
+        List<Map<String, Object>> users = tables.get("bot_users");
+        for (Map<String, Object> schedule : schedules) {
+            List<Map<String, Object>> embedded = new ArrayList<>();
+            synchronized (subscriptions) {
+                for (Map<String, Object> subscription : subscriptions) {
+                    if (compare(subscription.get("schedule_id"), schedule.get("id")) == 0) {
+                        embedded.add(new LinkedHashMap<>(subscription));
+                    }
+                }
+            }
+            for (Map<String, Object> subscription : embedded) {
+                Map<String, Object> user = null;
+                synchronized (users) {
+                    for (Map<String, Object> candidate : users) {
+                        if (compare(candidate.get("telegram_id"), subscription.get("telegram_id")) == 0) {
+                            user = new LinkedHashMap<>(candidate);
+                            break;
+                        }
+                    }
+                }
+                subscription.put("bot_users", user);
+            }
+            schedule.put("subscriptions", embedded);
+        }
+    }
+
+    private static void project(List<Map<String, Object>> rows, String[] columns) {
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> projected = new LinkedHashMap<>();
+            for (String column : columns) {
+                projected.put(column.trim(), rows.get(i).get(column.trim()));
+            }
+            rows.set(i, projected);
+        }
+    }
+
+    private static Map<String, Object> findByKeys(List<Map<String, Object>> rows, String[] keys, Map<String, Object> values) {
+        for (Map<String, Object> row : rows) {
+            boolean same = true;
+            for (String key : keys) {
+                if (compare(row.get(key), values.get(key)) != 0) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    // Все фильтры запроса должны совпасть; служебные параметры пропускаются
+    private static boolean matches(Map<String, Object> row, List<String[]> query) {
+        for (String[] param : query) {
+            String name = param[0];
+            if (name.equals("select") || name.equals("order") || name.equals("limit") || name.equals("on_conflict")
+                    || name.equals("columns") || name.contains(".")) {
+                continue;
+            }
+            if (name.equals("or")) {
+                if (!matchesOr(row, param[1])) return false;
+                continue;
+            }
+            int dot = param[1].indexOf('.');
+            if (dot < 0 || !matchesCondition(row.get(name), param[1].substring(0, dot), param[1].substring(dot + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // or=(and(a.eq.1,b.eq.2),and(...)) — формат пакетного удаления из журнала
+    private static boolean matchesOr(Map<String, Object> row, String expression) {
+        String body = expression.substring(1, expression.length() - 1);
+        for (String group : body.split("\\),?")) {
+            String conditions = group.startsWith("and(") ? group.substring(4) : group;
+            boolean all = true;
+            for (String condition : conditions.split(",")) {
+                String[] parts = condition.split("\\.", 3);
+                if (parts.length < 3 || !matchesCondition(row.get(parts[0]), parts[1], parts[2])) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all && !conditions.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesCondition(Object value, String operator, String operand) {
+        switch (operator) {
+            case "eq":
+                return compare(value, operand) == 0;
+            case "gte":
+                return value != null && compare(value, operand) >= 0;
+            case "lte":
+                return value != null && compare(value, operand) <= 0;
+            case "in":
+                for (String item : operand.substring(1, operand.length() - 1).split(",")) {
+                    if (compare(value, item) == 0) return true;
+                }
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    // Числа сравниваются как числа, остальное (в том числе ISO-даты) — как строки
+    private static int compare(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : a == null ? -1 : 1;
+        }
+        String left = a.toString();
+        String right = b.toString();
+        try {
+            return Long.compare(Long.parseLong(left), Long.parseLong(right));
+        } catch (NumberFormatException e) {
+            return left.compareTo(right);
+        }
+    }
+
+    private static String param(List<String[]> query, String name) {
+        for (String[] param : query) {
+            if (param[0].equals(name)) return param[1];
+        }
+        return null;
+    }
+
+    private static List<String[]> parseQuery(String rawQuery) {
+        List<String[]> params = new ArrayList<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.add(new String[]{
+                        URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8)});
+            }
+        }
+        return params;
+    }
+
+    private Object readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return mapper.readValue(in, Object.class);
+        }
+    }
+
+    private void injectLatency() throws InterruptedException {
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (delay > 0) {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,111 @@
+package com.yogabot.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Заглушка Bot API: принимает /bot<token>/<method> и отвечает {"ok":true,...} без отправки куда-либо.
+// Остальные пути (например, /health и /ping от KeepAliveService) отвечают 200 и в статистику не входят.
+public class TelegramStub {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final long latencyMs;
+
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    public TelegramStub(long latencyMs) throws IOException {
+        this.latencyMs = latencyMs;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // Значение для telegram.api.base-url: к нему DefaultAbsSender добавляет токен и метод
+    public String getApiUrl() {
+        return getBaseUrl() + "/bot";
+    }
+
+    public long totalCalls() {
+        return calls.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    public Map<String, Long> callsSnapshot() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        calls.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> snapshot.put(entry.getKey(), entry.getValue().sum()));
+        return snapshot;
+    }
+
+    public void resetCounters() {
+        calls.clear();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+            String path = exchange.getRequestURI().getPath();
+            if (!path.startsWith("/bot")) {
+                respond(exchange, "OK");
+                return;
+            }
+
+            String method = path.substring(path.lastIndexOf('/') + 1);
+            calls.computeIfAbsent(method, key -> new LongAdder()).increment();
+            if (latencyMs > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMs);
+            }
+            respond(exchange, "{\"ok\":true,\"result\":" + result(method) + "}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Методы отправки возвращают Message, служебные — true
+    private String result(String method) {
+        if (method.startsWith("send") || method.startsWith("edit")) {
+            return "{\"message_id\":" + messageIds.incrementAndGet() + ",\"date\":" + System.currentTimeMillis() / 1000
+                    + ",\"chat\":{\"id\":1,\"type\":\"private\"},\"text\":\"ok\"}";
+        }
+        return "true";
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.yogabot.loadtest;
+
+import com.yogabot.util.CallbackData;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Готовые тела вебхука (JSON Update) для сценариев нагрузки:
+// menu — нажатия кнопок меню, storm — волна записей/отмен из личных чатов,
+// channel — та же волна, но с кнопок поста в канале (как после рассылки в 16:00: у всех колбэков один chat),
+// mixed — обычный день: в основном меню, около трети — колбэки записи.
+public class UpdateGenerator {
+
+    private static final String[] MENU = {"/start", "📅 Расписание", "📋 Запись", "📅 Расписание", "📋 Запись"};
+
+    private static final long CHANNEL_CHAT_ID = -1001234567890L;
+    private static final long CHANNEL_POST_ID = 77;
+
+    private final Random random;
+    private final int users;
+    private final long scheduleId;
+    private final LocalDate classDate;
+    private long updateId = 500_000_000L;
+
+    public UpdateGenerator(long seed, int users, long scheduleId, LocalDate classDate) {
+        this.random = new Random(seed);
+        this.users = users;
+        this.scheduleId = scheduleId;
+        this.classDate = classDate;
+    }
+
+    public List<byte[]> generate(String scenario, int count) {
+        List<byte[]> updates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            updates.add(next(scenario).getBytes(StandardCharsets.UTF_8));
+        }
+        return updates;
+    }
+
+    private String next(String scenario) {
+        long userId = 10_000L + random.nextInt(users);
+        switch (scenario) {
+            case "menu":
+                return message(userId, MENU[random.nextInt(MENU.length)]);
+            case "storm":
+                return subscriptionCallback(userId, false);
+            case "channel":
+                return subscriptionCallback(userId, true);
+            case "mixed":
+                return random.nextInt(10) < 7 ? message(userId, MENU[random.nextInt(MENU.length)]) : subscriptionCallback(userId, false);
+            default:
+                throw new IllegalArgumentException("Unknown scenario: " + scenario);
+        }
+    }
+
+    // Большинство записывается, часть передумывает: отмена идет по той же паре занятие/пользователь
+    private String subscriptionCallback(long userId, boolean fromChannel) {
+        String type = random.nextBoolean() ? "morning" : "evening";
+        String data = random.nextInt(5) == 0
+                ? CallbackData.unsubscribe(type, scheduleId, classDate)
+                : CallbackData.subscribe(type, scheduleId, classDate);
+        return fromChannel ? channelCallback(userId, data) : callback(userId, data);
+    }
+
+    private String message(long userId, String text) {
+        return "{\"update_id\":" + (++updateId) + ",\"message\":{\"message_id\":" + updateId
+                + ",\"date\":" + System.currentTimeMillis() / 1000 + ",\"from\":" + user(userId)
+                + ",\"chat\":{\"id\":" + userId + ",\"type\":\"private\"},\"text\":\"" + text + "\"}}";
+    }
+
+    private String callback(long userId, String data) {
+        return "{\"update_id\":" + (++updateId) + ",\"callback_query\":{\"id\":\"" + updateId + "\",\"from\":" + user(userId)
+                + ",\"message\":{\"message_id\":1,\"date\":" + System.currentTimeMillis() / 1000
+                + ",\"chat\":{\"id\":" + userId + ",\"type\":\"private\"},\"text\":\"Напоминание\"},"
+                + "\"chat_instance\":\"" + userId + "\",\"data\":\"" + data + "\"}}";
+    }
+
+    // Кнопка под постом канала: chat — канал, одинаковый у всех нажавших
+    private String channelCallback(long userId, String data) {
+        return "{\"update_id\":" + (++updateId) + ",\"callback_query\":{\"id\":\"" + updateId + "\",\"from\":" + user(userId)
+                + ",\"message\":{\"message_id\":" + CHANNEL_POST_ID + ",\"date\":" + System.currentTimeMillis() / 1000
+                + ",\"chat\":{\"id\":" + CHANNEL_CHAT_ID + ",\"type\":\"channel\",\"title\":\"Yoga\"},\"text\":\"Напоминание\"},"
+                + "\"chat_instance\":\"" + CHANNEL_CHAT_ID + "\",\"data\":\"" + data + "\"}}";
+    }
+
+    private static String user(long userId) {
+        return "{\"id\":" + userId + ",\"is_bot\":false,\"first_name\":\"User\",\"last_name\":\"" + userId
+                + "\",\"username\":\"user_" + userId + "\",\"language_code\":\"ru\"}";
+    }
+}
\ No newline at end of file
@@ -1,22 +1,56 @@
 package com.yogabot.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
 public class SupabaseConfig {
 
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 10_000;
+    private static final int CONNECTION_REQUEST_TIMEOUT_MS = 5000;
+
     @Value("${supabase.url}")
     private String supabaseUrl;
 
     @Value("${supabase.key}")
     private String supabaseKey;
 
+    @Value("${supabase.http.max-total:20}")
+    private int maxTotal;
+
+    @Value("${supabase.http.max-per-route:20}")
+    private int maxPerRoute;
+
+    @Value("${supabase.http.idle-evict-seconds:30}")
+    private long idleEvictSeconds;
+
+    @Value("${supabase.http.connection-ttl-seconds:300}")
+    private long connectionTtlSeconds;
+
+    @Value("${supabase.async.pool-size:16}")
+    private int asyncPoolSize;
+
+    // Общий RestTemplate (keep-alive пинги и прочие внешние вызовы)
     @Bean
     public RestTemplate restTemplate(RestTemplateBuilder builder) {
         return builder
@@ -26,6 +60,74 @@ public class SupabaseConfig {
                 .build();
     }
 
+    // Пул постоянных соединений к Supabase: TLS-рукопожатие выполняется один раз на соединение, а не на запрос
+    @Bean(destroyMethod = "shutdown")
+    public PoolingHttpClientConnectionManager supabaseConnectionManager(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(connectionTtlSeconds, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity(2000);
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "supabase").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    // HttpClient сам добавляет Accept-Encoding: gzip,deflate и прозрачно распаковывает ответы
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient supabaseHttpClient(PoolingHttpClientConnectionManager supabaseConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(supabaseConnectionManager)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEvictSeconds, TimeUnit.SECONDS)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT_MS)
+                        .build())
+                .build();
+    }
+
+    // Таймауты по умолчанию; запросы внутри SupabaseRequestTimeout.with получают свой, более короткий
+    @Bean
+    public RestTemplate supabaseRestTemplate(RestTemplateBuilder builder, CloseableHttpClient supabaseHttpClient) {
+        return builder
+                .requestFactory(() -> {
+                    HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(supabaseHttpClient);
+                    factory.setHttpContextFactory((method, uri) ->
+                            SupabaseRequestTimeout.createContext(CONNECT_TIMEOUT_MS, CONNECTION_REQUEST_TIMEOUT_MS));
+                    return factory;
+                })
+                .setConnectTimeout(Duration.ofMillis(CONNECT_TIMEOUT_MS))
+                .setReadTimeout(Duration.ofMillis(READ_TIMEOUT_MS))
+                .additionalMessageConverters(new MappingJackson2HttpMessageConverter())
+                .build();
+    }
+
+    // Пул для параллельных запросов AsyncSupabaseService (не больше соединений на маршрут)
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService supabaseExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.min(asyncPoolSize, maxPerRoute), runnable -> {
+            Thread thread = new Thread(runnable, "supabase-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Отдельный пул для самих HTTP-попыток с хеджированием: вызывающий поток (в том числе из supabaseExecutor)
+    // только ждет результат, поэтому вложенные задачи не блокируют друг друга в одном пуле
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService supabaseRequestExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxPerRoute, maxPerRoute, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxPerRoute * 4), runnable -> {
+            Thread thread = new Thread(runnable, "supabase-request-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     // Аннотации @Bean удалены. Значения будут инжектироваться напрямую в SupabaseService
     public String getSupabaseUrl() {
         return supabaseUrl;
@@ -0,0 +1,43 @@
+package com.yogabot.config;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.function.Supplier;
+
+// Таймаут для HTTP-запросов, выполняемых в текущем потоке. Фабрика запросов supabaseRestTemplate превращает его
+// в RequestConfig конкретного запроса, поэтому попытка, которую больше не ждут, освобождает соединение и поток
+// не позже своего таймаута, а не через общие 10 с.
+public final class SupabaseRequestTimeout {
+
+    private static final ThreadLocal<Integer> TIMEOUT_MS = new ThreadLocal<>();
+
+    private SupabaseRequestTimeout() {
+    }
+
+    public static <T> T with(long timeoutMs, Supplier<T> request) {
+        TIMEOUT_MS.set((int) Math.max(1, Math.min(Integer.MAX_VALUE, timeoutMs)));
+        try {
+            return request.get();
+        } finally {
+            TIMEOUT_MS.remove();
+        }
+    }
+
+    // null — таймаут не задан, запрос получит настройки фабрики по умолчанию.
+    // Соединение и место в пуле ждем не дольше их обычных лимитов, но и не дольше таймаута запроса.
+    static HttpContext createContext(int connectTimeoutMs, int connectionRequestTimeoutMs) {
+        Integer timeoutMs = TIMEOUT_MS.get();
+        if (timeoutMs == null) {
+            return null;
+        }
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.custom()
+                .setConnectTimeout(Math.min(timeoutMs, connectTimeoutMs))
+                .setConnectionRequestTimeout(Math.min(timeoutMs, connectionRequestTimeoutMs))
+                .setSocketTimeout(timeoutMs)
+                .build());
+        return context;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.yogabot.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class WebhookExecutorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookExecutorConfig.class);
+
+    @Value("${webhook.async.virtual-threads:true}")
+    private boolean virtualThreads;
+
+    @Value("${webhook.async.pool-size:16}")
+    private int poolSize;
+
+    // Каждая полоса UpdateDispatcher ставит в пул не больше одной задачи, поэтому очереди пула хватает числа полос.
+    // Очередь обновлений ограничена емкостью полос (lanes × lane-capacity): при переполнении вебхук отвечает 429.
+    @Value("${webhook.dispatcher.lanes:16}")
+    private int laneCount;
+
+    // Виртуальные потоки доступны с Java 21 (профиль сборки java21), на Java 17 используется ограниченный пул
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService webhookExecutor() {
+        if (virtualThreads) {
+            try {
+                ExecutorService executor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+                log.info("Webhook updates are processed on virtual threads");
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                log.info("Virtual threads are not available on Java {}, using a bounded pool",
+                        System.getProperty("java.specification.version"));
+            }
+        }
+
+        log.info("Webhook updates are processed on a pool of {} threads", poolSize);
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, laneCount)), namedThreadFactory("webhook-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -4,13 +4,18 @@ import com.yogabot.model.BotUser;
 import com.yogabot.model.Schedule;
 import com.yogabot.service.BotService;
 import com.yogabot.service.NotificationService;
+import com.yogabot.service.SeatEngine;
 import com.yogabot.service.SupabaseService;
+import com.yogabot.util.CallbackData;
+import com.yogabot.util.CallbackRouter;
 import com.yogabot.util.KeyboardUtil;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramWebhookBot;
 import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
@@ -23,15 +28,34 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class BotController extends TelegramWebhookBot {
 
     private static final Logger log = LoggerFactory.getLogger(BotController.class);
 
+    // Сколько человек из листа ожидания пробуем записать на одно освободившееся место, если Supabase отвечает ошибкой
+    private static final int MAX_PROMOTION_ATTEMPTS = 3;
+
+    // Теги метрик: команды меню и префиксы колбэков; все остальное — "other", чтобы число серий было ограничено
+    private static final Map<String, String> COMMAND_TAGS = new HashMap<>();
+    static {
+        COMMAND_TAGS.put("/start", "start");
+        COMMAND_TAGS.put("📅 Расписание", "schedule");
+        COMMAND_TAGS.put("📋 Запись", "subscriptions");
+        COMMAND_TAGS.put("📊 Записи на неделю", "weekly_attendance");
+        COMMAND_TAGS.put("✏️ Редактирование", "edit");
+        COMMAND_TAGS.put("🔔 Уведомления вкл/выкл", "toggle_notifications");
+        COMMAND_TAGS.put("✏️ Изменить", "edit_menu");
+        COMMAND_TAGS.put("🗑 Удалить", "delete_menu");
+        COMMAND_TAGS.put("🔙 Назад", "back");
+    }
+
     @Value("${telegram.bot.token}")
     private String botToken;
 
@@ -47,6 +71,34 @@ public class BotController extends TelegramWebhookBot {
     @Autowired
     private SupabaseService supabaseService;
 
+    @Autowired
+    private SeatEngine seatEngine;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Обработчики колбэков по коду операции; данные разбирает CallbackData (новый и старый формат)
+    private final CallbackRouter<CallbackQuery, BotApiMethod<?>> callbackRouter = new CallbackRouter<CallbackQuery, BotApiMethod<?>>()
+            .on(CallbackData.Op.SUBSCRIBE, this::handleSubscription)
+            .on(CallbackData.Op.UNSUBSCRIBE, this::handleSubscription)
+            .on(CallbackData.Op.EDIT_DAY, (data, query) -> handleEditDay(data.getDate(), chatId(query)))
+            .on(CallbackData.Op.DELETE_DAY, (data, query) -> handleDeleteDay(data.getDate(), chatId(query)))
+            .on(CallbackData.Op.CONFIRM_DELETE, (data, query) -> handleConfirmDelete(data.getDate(), chatId(query)))
+            .on(CallbackData.Op.CANCEL_DELETE, (data, query) -> sendDeleteScheduleMenu(chatId(query)))
+            .on(CallbackData.Op.BACK_TO_EDIT, (data, query) -> sendEditOptions(chatId(query)))
+            .on(CallbackData.Op.BACK_TO_MAIN, (data, query) -> sendMainMenu(chatId(query), botService.isAdmin(query.getFrom().getId())));
+
+    // Адрес Bot API задается через конструктор: опции нужны уже в super(). Нагрузочный тест подменяет его заглушкой.
+    public BotController(@Value("${telegram.api.base-url:https://api.telegram.org/bot}") String apiBaseUrl) {
+        super(botOptions(apiBaseUrl));
+    }
+
+    private static DefaultBotOptions botOptions(String apiBaseUrl) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(apiBaseUrl);
+        return options;
+    }
+
     @Override
     public String getBotUsername() { return botUsername; }
 
@@ -57,14 +109,28 @@ public class BotController extends TelegramWebhookBot {
     public String getBotPath() { return ""; }
 
     public BotApiMethod<?> onWebhookUpdateReceived(Update update) {
+        long start = System.nanoTime();
+        String metric = null;
+        String tag = null;
         try {
             if (update.hasMessage() && update.getMessage().hasText()) {
+                metric = "bot.command";
+                tag = COMMAND_TAGS.getOrDefault(update.getMessage().getText(), "other");
                 return handleMessage(update.getMessage());
             } else if (update.hasCallbackQuery()) {
-                return handleCallbackQuery(update.getCallbackQuery());
+                metric = "bot.callback";
+                CallbackQuery query = update.getCallbackQuery();
+                CallbackData data = CallbackData.decode(query.getData());
+                tag = data != null ? data.getOp().tag() : "other";
+                return handleCallbackQuery(query, data);
             }
         } catch (Exception e) {
             log.error("Error processing update", e);
+        } finally {
+            if (metric != null) {
+                String tagName = metric.equals("bot.command") ? "command" : "prefix";
+                meterRegistry.timer(metric, tagName, tag).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
         }
         return null;
     }
@@ -94,6 +160,8 @@ public class BotController extends TelegramWebhookBot {
                     } else {
                         return sendMessage(chatId, "⛔ Функция просмотра записей доступна только администратору.");
                     }
+                case "📊 Записи на неделю":
+                    return isAdmin ? sendMessage(chatId, botService.getWeeklyAttendance()) : sendAccessDenied(chatId);
                 case "✏️ Редактирование":
                     return isAdmin ? sendEditOptions(chatId) : sendAccessDenied(chatId);
                 case "🔔 Уведомления вкл/выкл":
@@ -150,7 +218,7 @@ public class BotController extends TelegramWebhookBot {
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText("✏️ Выберите день для изменения расписания (или выходного):");
-        message.setReplyMarkup(botService.getScheduleKeyboard("edit_day_"));
+        message.setReplyMarkup(botService.getScheduleKeyboard(CallbackData.Op.EDIT_DAY));
         return message;
     }
 
@@ -158,7 +226,7 @@ public class BotController extends TelegramWebhookBot {
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText("🗑 Выберите день для удаления (сброса) расписания:");
-        message.setReplyMarkup(botService.getScheduleKeyboard("delete_day_"));
+        message.setReplyMarkup(botService.getScheduleKeyboard(CallbackData.Op.DELETE_DAY));
         return message;
     }
 
@@ -190,56 +258,63 @@ public class BotController extends TelegramWebhookBot {
 
     // --- Callback Query Handlers ---
 
-    private BotApiMethod<?> handleCallbackQuery(CallbackQuery callbackQuery) {
-        String data = callbackQuery.getData();
-        Long userId = callbackQuery.getFrom().getId();
-        Long chatId = callbackQuery.getMessage().getChatId();
-
-        if (data.startsWith("subscribe_") || data.startsWith("unsubscribe_")) {
-            return handleSubscription(data, userId, chatId, callbackQuery.getFrom());
-        }
-        else if (data.startsWith("edit_day_")) {
-            return handleEditDay(data, chatId);
-        }
-        else if (data.startsWith("delete_day_")) {
-            return handleDeleteDay(data, chatId);
-        }
-        else if (data.startsWith("confirm_delete_")) {
-            return handleConfirmDelete(data, chatId);
-        }
-        else if (data.equals("cancel_delete")) {
-            return sendDeleteScheduleMenu(chatId);
-        }
-        else if (data.equals("back_to_edit")) {
-            return sendEditOptions(chatId);
-        }
-        else if (data.equals("back_to_main")) {
-            return sendMainMenu(chatId, botService.isAdmin(userId));
+    private BotApiMethod<?> handleCallbackQuery(CallbackQuery callbackQuery, CallbackData data) {
+        if (data == null) {
+            log.warn("Unknown callback data: {}", callbackQuery.getData());
+            return null;
         }
+        return callbackRouter.route(data, callbackQuery);
+    }
 
-        return null;
+    private static Long chatId(CallbackQuery callbackQuery) {
+        return callbackQuery.getMessage().getChatId();
     }
 
-    private SendMessage handleSubscription(String data, Long userId, Long chatId, User telegramUser) {
+    private SendMessage handleSubscription(CallbackData data, CallbackQuery callbackQuery) {
+        Long userId = callbackQuery.getFrom().getId();
+        Long chatId = chatId(callbackQuery);
         try {
-            String[] parts = data.split("_");
-            String action = parts[0];
-            String classType = parts[1].toUpperCase();
-            Long scheduleId = Long.parseLong(parts[2]);
-
-            saveUser(telegramUser);
-            Schedule schedule = supabaseService.getWeeklySchedule(LocalDate.now()).stream()
-                    .filter(s -> s.getId() != null && s.getId().equals(scheduleId))
-                    .findFirst()
-                    .orElse(null);
-
-            LocalDate classDate = (schedule != null) ? schedule.getDate() : LocalDate.now().plusDays(1);
-
-            if (action.equals("subscribe")) {
-                supabaseService.subscribeToClass(userId, scheduleId, classType, classDate);
+            String classType = data.getClassType();
+            Long scheduleId = data.getScheduleId();
+
+            saveUser(callbackQuery.getFrom());
+
+            if (data.getOp() == CallbackData.Op.SUBSCRIBE) {
+                LocalDate classDate = resolveClassDate(data);
+                if (classDate == null) {
+                    return sendMessage(chatId, "❌ Занятие не найдено. Откройте расписание заново.");
+                }
+
+                SeatEngine.Reservation reservation = seatEngine.reserve(scheduleId, classType, userId);
+                switch (reservation.getOutcome()) {
+                    case UNAVAILABLE:
+                        return sendMessage(chatId, "❌ Не удалось проверить свободные места. Попробуйте позже.");
+                    case ALREADY_RESERVED:
+                        return sendMessage(chatId, "✅ Вы уже записаны на это занятие.");
+                    case WAITLISTED:
+                        return sendMessage(chatId, "⏳ Все места заняты. Вы в листе ожидания, позиция "
+                                + reservation.getWaitlistPosition() + ". Если место освободится, запишем автоматически.");
+                    case ALREADY_WAITLISTED:
+                        return sendMessage(chatId, "⏳ Вы уже в листе ожидания, позиция " + reservation.getWaitlistPosition() + ".");
+                    default:
+                        break;
+                }
+
+                if (!supabaseService.subscribeToClass(userId, scheduleId, classType, classDate)) {
+                    if (reservation.getOutcome() == SeatEngine.Outcome.RESERVED) {
+                        promoteFromWaitlist(seatEngine.release(scheduleId, classType, userId), scheduleId, classType);
+                    }
+                    return sendMessage(chatId, "❌ Не удалось записаться. Попробуйте позже.");
+                }
                 return sendMessage(chatId, "✅ Вы успешно записались на занятие!");
             } else {
-                supabaseService.unsubscribeFromClass(userId, scheduleId, classType);
+                if (seatEngine.leaveWaitlist(scheduleId, classType, userId)) {
+                    return sendMessage(chatId, "❌ Вы удалены из листа ожидания.");
+                }
+                if (!supabaseService.unsubscribeFromClass(userId, scheduleId, classType)) {
+                    return sendMessage(chatId, "❌ Не удалось отменить запись. Попробуйте позже.");
+                }
+                promoteFromWaitlist(seatEngine.release(scheduleId, classType, userId), scheduleId, classType);
                 return sendMessage(chatId, "❌ Запись на занятие отменена.");
             }
 
@@ -249,26 +324,48 @@ public class BotController extends TelegramWebhookBot {
         }
     }
 
+    // Освободившееся место уже отдано первому из листа ожидания: записываем его в Supabase и сообщаем ему.
+    // Если запись не удалась, место переходит следующему в очереди; попыток не больше MAX_PROMOTION_ATTEMPTS.
+    private void promoteFromWaitlist(Long promotedId, Long scheduleId, String classType) {
+        for (int attempt = 1; promotedId != null; attempt++) {
+            Schedule schedule = supabaseService.getScheduleById(scheduleId);
+            if (schedule != null && supabaseService.subscribeToClass(promotedId, scheduleId, classType, schedule.getDate())) {
+                notificationService.sendWaitlistPromotion(promotedId, schedule, classType);
+                return;
+            }
+            log.error("Failed to persist waitlist promotion of {} to schedule {} {}", promotedId, scheduleId, classType);
+            promotedId = seatEngine.revokePromotion(scheduleId, classType, promotedId, attempt < MAX_PROMOTION_ATTEMPTS);
+        }
+    }
+
+    // Колбэки записи несут дату (2Sm42:20250101 или subscribe_morning_42_20250101), для самых старых сообщений
+    // дату берем из индекса расписания по id или точечным запросом в Supabase
+    private LocalDate resolveClassDate(CallbackData data) {
+        if (data.getDate() != null) {
+            return data.getDate();
+        }
+        Schedule schedule = supabaseService.getScheduleById(data.getScheduleId());
+        return schedule != null ? schedule.getDate() : null;
+    }
+
     // ИСПРАВЛЕНО: Обработка нажатия на день для редактирования
-    private SendMessage handleEditDay(String data, Long chatId) {
-        String dateStr = data.replace("edit_day_", "");
-        return sendMessage(chatId, "✏️ Чтобы изменить расписание на <b>" + dateStr + "</b>, необходимо изменить код бота для поддержки текстового ввода.\n\n" +
+    private SendMessage handleEditDay(LocalDate date, Long chatId) {
+        return sendMessage(chatId, "✏️ Чтобы изменить расписание на <b>" + date + "</b>, необходимо изменить код бота для поддержки текстового ввода.\n\n" +
                 "<i>(В данной версии доступно только отображение меню дней)</i>");
     }
 
     // ИСПРАВЛЕНО: Обработка нажатия на день для удаления
-    private SendMessage handleDeleteDay(String data, Long chatId) {
-        String dateStr = data.replace("delete_day_", "");
+    private SendMessage handleDeleteDay(LocalDate date, Long chatId) {
 
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
         List<InlineKeyboardButton> row = new ArrayList<>();
 
         InlineKeyboardButton yes = new InlineKeyboardButton("✅ Да, удалить");
-        yes.setCallbackData("confirm_delete_" + dateStr);
+        yes.setCallbackData(CallbackData.day(CallbackData.Op.CONFIRM_DELETE, date));
 
         InlineKeyboardButton no = new InlineKeyboardButton("❌ Отмена");
-        no.setCallbackData("cancel_delete");
+        no.setCallbackData(CallbackData.of(CallbackData.Op.CANCEL_DELETE));
 
         row.add(yes);
         row.add(no);
@@ -277,17 +374,16 @@ public class BotController extends TelegramWebhookBot {
 
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
-        message.setText("🗑 Вы уверены, что хотите сбросить расписание на <b>" + dateStr + "</b>?");
+        message.setText("🗑 Вы уверены, что хотите сбросить расписание на <b>" + date + "</b>?");
         message.setReplyMarkup(markup);
         message.setParseMode("HTML");
         return message;
     }
 
-    private SendMessage handleConfirmDelete(String data, Long chatId) {
-        String dateStr = data.replace("confirm_delete_", "");
+    private SendMessage handleConfirmDelete(LocalDate date, Long chatId) {
         try {
-            supabaseService.deleteSchedule(LocalDate.parse(dateStr));
-            return sendMessage(chatId, "✅ Расписание на " + dateStr + " успешно сброшено (отдых).");
+            supabaseService.deleteSchedule(date);
+            return sendMessage(chatId, "✅ Расписание на " + date + " успешно сброшено (отдых).");
         } catch (Exception e) {
             return sendMessage(chatId, "❌ Ошибка удаления: " + e.getMessage());
         }
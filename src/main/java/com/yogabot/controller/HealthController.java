@@ -1,6 +1,10 @@
 package com.yogabot.controller;
 
+import com.yogabot.model.BroadcastReport;
+import com.yogabot.service.BroadcastService;
 import com.yogabot.service.NotificationService;
+import com.yogabot.service.ScheduleCache;
+import com.yogabot.service.SeatEngine;
 import com.yogabot.service.SupabaseService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,6 +21,15 @@ public class HealthController {
     @Autowired
     private SupabaseService supabaseService;
 
+    @Autowired
+    private ScheduleCache scheduleCache;
+
+    @Autowired
+    private BroadcastService broadcastService;
+
+    @Autowired
+    private SeatEngine seatEngine;
+
     @GetMapping("/health")
     public String health() {
         return "✅ Yoga Bot is alive! Time: " + LocalDateTime.now();
@@ -37,6 +50,32 @@ public class HealthController {
         return supabaseService.checkUserConnection();
     }
 
+    @GetMapping("/cache-stats")
+    public String cacheStats() {
+        return scheduleCache.getStats();
+    }
+
+    @GetMapping("/breakers")
+    public String breakers() {
+        return supabaseService.getBreakerStates();
+    }
+
+    @GetMapping("/latency")
+    public String latency() {
+        return supabaseService.getLatencyStats();
+    }
+
+    @GetMapping("/seats")
+    public String seats() {
+        return seatEngine.getStats();
+    }
+
+    @GetMapping("/broadcast-report")
+    public String broadcastReport() {
+        BroadcastReport report = broadcastService.getLastReport();
+        return report != null ? report.summary() : "No broadcasts yet";
+    }
+
     /*
      * ⚠️ ОПАСНЫЕ МЕТОДЫ (Отключены для безопасности в Production)
      * Раскомментируйте только для локального тестирования
@@ -1,20 +1,81 @@
 package com.yogabot.controller;
 
+import com.yogabot.service.AsyncUpdateProcessor;
+import com.yogabot.util.UpdateIdWindow;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
 @RestController
 public class WebhookController {
 
     @Autowired
     private BotController botController;
 
+    @Autowired
+    private AsyncUpdateProcessor asyncUpdateProcessor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${webhook.async.enabled:true}")
+    private boolean asyncEnabled;
+
+    // Сколько последних update_id помнить для отсева повторных доставок (0 — не отсеивать).
+    // Только в асинхронном режиме: в синхронном ответ едет в теле вебхука, и после таймаута Telegram
+    // повтор — единственный способ доставить его пользователю, отбрасывать его нельзя.
+    @Value("${webhook.dedup.window:65536}")
+    private int dedupWindow;
+
+    private UpdateIdWindow seenUpdates;
+
+    @PostConstruct
+    public void init() {
+        seenUpdates = asyncEnabled && dedupWindow > 0 ? new UpdateIdWindow(dedupWindow) : null;
+    }
+
     @PostMapping("/")
-    public BotApiMethod<?> onUpdateReceived(@RequestBody Update update) {
-        return botController.onWebhookUpdateReceived(update);
+    public ResponseEntity<BotApiMethod<?>> onUpdateReceived(@RequestBody Update update) {
+        long start = System.nanoTime();
+        // Telegram повторяет доставку, если ответ был медленным: повтор подтверждаем, но не обрабатываем
+        Integer updateId = update.getUpdateId();
+        if (seenUpdates != null && updateId != null && !seenUpdates.markIfNew(updateId)) {
+            meterRegistry.counter("webhook.redeliveries").increment();
+            record(start, "async", "duplicate");
+            return ResponseEntity.ok().build();
+        }
+
+        if (!asyncEnabled) {
+            ResponseEntity<BotApiMethod<?>> response = ResponseEntity.ok(botController.onWebhookUpdateReceived(update));
+            record(start, "sync", "ok");
+            return response;
+        }
+
+        // Сразу подтверждаем получение; при переполненной очереди Telegram повторит доставку позже
+        if (asyncUpdateProcessor.submit(update)) {
+            record(start, "async", "ok");
+            return ResponseEntity.ok().build();
+        }
+        // Обновление не принято — повторная доставка должна пройти
+        if (seenUpdates != null && updateId != null) {
+            seenUpdates.forget(updateId);
+        }
+        record(start, "async", "rejected");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+    }
+
+    private void record(long start, String mode, String outcome) {
+        meterRegistry.timer("webhook.handle", "mode", mode, "outcome", outcome)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 }
\ No newline at end of file
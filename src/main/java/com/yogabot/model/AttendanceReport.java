@@ -0,0 +1,111 @@
+package com.yogabot.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Отчет о записях за диапазон дат, собранный из одного запроса с встраиванием
+// schedule -> subscriptions -> bot_users. Хранит только то, что нужно для вывода.
+public class AttendanceReport {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Map<LocalDate, Day> days = new TreeMap<>();
+
+    private AttendanceReport(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public static AttendanceReport fromRows(LocalDate from, LocalDate to, ScheduleRow[] rows) {
+        AttendanceReport report = new AttendanceReport(from, to);
+        if (rows == null) return report;
+
+        for (ScheduleRow row : rows) {
+            Day day = new Day(row.getDate(), row);
+            if (row.subscriptions != null) {
+                for (SubscriptionRow subscription : row.subscriptions) {
+                    String name = subscription.user != null
+                            ? subscription.user.getDisplayName()
+                            : "ID: " + subscription.telegramId;
+                    if ("MORNING".equals(subscription.classType)) {
+                        day.morning.add(name);
+                    } else if ("EVENING".equals(subscription.classType)) {
+                        day.evening.add(name);
+                    }
+                }
+            }
+            report.days.put(row.getDate(), day);
+        }
+        return report;
+    }
+
+    public LocalDate getFrom() { return from; }
+
+    public LocalDate getTo() { return to; }
+
+    // День без строки в БД возвращается с пустым расписанием
+    public Day getDay(LocalDate date) {
+        Day day = days.get(date);
+        return day != null ? day : new Day(date, null);
+    }
+
+    public static class Day {
+        private final LocalDate date;
+        private final Schedule schedule;
+        private final List<String> morning = new ArrayList<>();
+        private final List<String> evening = new ArrayList<>();
+
+        private Day(LocalDate date, Schedule schedule) {
+            this.date = date;
+            this.schedule = schedule;
+        }
+
+        public LocalDate getDate() { return date; }
+
+        public Schedule getSchedule() { return schedule; }
+
+        public List<String> getAttendees(String classType) {
+            if ("MORNING".equals(classType)) return Collections.unmodifiableList(morning);
+            if ("EVENING".equals(classType)) return Collections.unmodifiableList(evening);
+            return Collections.emptyList();
+        }
+    }
+
+    // Строки ответа PostgREST со встроенными записями и пользователями
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ScheduleRow extends Schedule {
+        @JsonProperty("subscriptions")
+        private List<SubscriptionRow> subscriptions;
+
+        public List<SubscriptionRow> getSubscriptions() { return subscriptions; }
+        public void setSubscriptions(List<SubscriptionRow> subscriptions) { this.subscriptions = subscriptions; }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class SubscriptionRow {
+        @JsonProperty("telegram_id")
+        private Long telegramId;
+
+        @JsonProperty("class_type")
+        private String classType;
+
+        @JsonProperty("bot_users")
+        private BotUser user;
+
+        public Long getTelegramId() { return telegramId; }
+        public void setTelegramId(Long telegramId) { this.telegramId = telegramId; }
+
+        public String getClassType() { return classType; }
+        public void setClassType(String classType) { this.classType = classType; }
+
+        public BotUser getUser() { return user; }
+        public void setUser(BotUser user) { this.user = user; }
+    }
+}
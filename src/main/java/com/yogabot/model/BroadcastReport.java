@@ -0,0 +1,91 @@
+package com.yogabot.model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Итог одной рассылки: статус доставки по каждому получателю, пропускная способность и длительность
+public class BroadcastReport {
+
+    public enum DeliveryStatus { PENDING, SENT, BLOCKED, FAILED }
+
+    private final String name;
+    private final long startedAt;
+    private volatile long finishedAt;
+    // null — список получателей прочитан полностью
+    private volatile String incompleteReason;
+
+    private final Map<Long, DeliveryStatus> statuses = new ConcurrentHashMap<>();
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger blocked = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    public BroadcastReport(String name) {
+        this.name = name;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    // false, если получатель уже есть в этой рассылке
+    public boolean register(Long chatId) {
+        return statuses.putIfAbsent(chatId, DeliveryStatus.PENDING) == null;
+    }
+
+    public void record(Long chatId, DeliveryStatus status) {
+        statuses.put(chatId, status);
+        switch (status) {
+            case SENT: sent.incrementAndGet(); break;
+            case BLOCKED: blocked.incrementAndGet(); break;
+            case FAILED: failed.incrementAndGet(); break;
+            default: break;
+        }
+    }
+
+    public void markIncomplete(String reason) {
+        incompleteReason = reason;
+    }
+
+    public void finish() {
+        finishedAt = System.currentTimeMillis();
+    }
+
+    public String getName() { return name; }
+
+    public int getTotal() { return statuses.size(); }
+
+    public int getSent() { return sent.get(); }
+
+    public int getBlocked() { return blocked.get(); }
+
+    public int getFailed() { return failed.get(); }
+
+    public boolean isFinished() { return finishedAt != 0; }
+
+    public boolean isComplete() { return incompleteReason == null; }
+
+    public String getIncompleteReason() { return incompleteReason; }
+
+    public long getDurationMillis() {
+        return (isFinished() ? finishedAt : System.currentTimeMillis()) - startedAt;
+    }
+
+    // Отправленных сообщений в секунду
+    public double getThroughput() {
+        long duration = getDurationMillis();
+        return duration > 0 ? sent.get() * 1000d / duration : 0;
+    }
+
+    public DeliveryStatus getStatus(Long chatId) {
+        return statuses.get(chatId);
+    }
+
+    public Map<Long, DeliveryStatus> getStatuses() {
+        return Collections.unmodifiableMap(statuses);
+    }
+
+    public String summary() {
+        return String.format("Broadcast '%s': total=%d, sent=%d, blocked=%d, failed=%d, %.1f msg/s, %d ms%s",
+                name, getTotal(), getSent(), getBlocked(), getFailed(), getThroughput(), getDurationMillis(),
+                !isFinished() ? " (in progress)" : isComplete() ? "" : " (INCOMPLETE: " + incompleteReason + ")");
+    }
+}
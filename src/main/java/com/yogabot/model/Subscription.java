@@ -22,7 +22,9 @@ public class Subscription {
     @JsonProperty("subscribed_at")
     private LocalDateTime subscribedAt;
 
-    // Конструктор
+    // Конструкторы
+    public Subscription() {}
+
     public Subscription(Long telegramId, Long scheduleId, String classType, LocalDate classDate) {
         this.telegramId = telegramId;
         this.scheduleId = scheduleId;
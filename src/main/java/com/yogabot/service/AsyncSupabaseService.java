@@ -0,0 +1,47 @@
+package com.yogabot.service;
+
+import com.yogabot.model.BotUser;
+import com.yogabot.model.Schedule;
+import com.yogabot.model.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+// Неблокирующий для вызывающего вариант SupabaseService с тем же набором методов чтения.
+// Запросы выполняются на отдельном пуле поверх общего пула соединений, поэтому независимые
+// выборки можно запускать одновременно и объединять (thenCombine/allOf).
+@Service
+public class AsyncSupabaseService {
+
+    @Autowired
+    private SupabaseService supabaseService;
+
+    @Autowired
+    @Qualifier("supabaseExecutor")
+    private ExecutorService supabaseExecutor;
+
+    public CompletableFuture<List<Schedule>> getWeeklySchedule(LocalDate startOfWeek) {
+        return CompletableFuture.supplyAsync(() -> supabaseService.getWeeklySchedule(startOfWeek), supabaseExecutor);
+    }
+
+    public CompletableFuture<Schedule> getScheduleByDate(LocalDate date) {
+        return CompletableFuture.supplyAsync(() -> supabaseService.getScheduleByDate(date), supabaseExecutor);
+    }
+
+    public CompletableFuture<BotUser> getBotUserByTelegramId(Long telegramId) {
+        return CompletableFuture.supplyAsync(() -> supabaseService.getBotUserByTelegramId(telegramId), supabaseExecutor);
+    }
+
+    public CompletableFuture<List<BotUser>> getUsersByIds(List<Long> telegramIds) {
+        return CompletableFuture.supplyAsync(() -> supabaseService.getUsersByIds(telegramIds), supabaseExecutor);
+    }
+
+    public CompletableFuture<List<Subscription>> getSubscriptionsForClass(Long scheduleId, String classType) {
+        return CompletableFuture.supplyAsync(() -> supabaseService.getSubscriptionsForClass(scheduleId, classType), supabaseExecutor);
+    }
+}
@@ -0,0 +1,94 @@
+package com.yogabot.service;
+
+import com.yogabot.controller.BotController;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Асинхронная обработка вебхуков: вебхук подтверждается сразу,
+// обновление обрабатывается в фоне (в полосе своего чата), а ответ отправляется через TelegramSendGateway
+@Service
+public class AsyncUpdateProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncUpdateProcessor.class);
+
+    @Autowired
+    private BotController botController;
+
+    @Autowired
+    private UpdateDispatcher updateDispatcher;
+
+    @Autowired
+    private TelegramSendGateway sendGateway;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Принятые, но еще не начатые обновления; не больше lanes × lane-capacity, дальше submit отказывает
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @PostConstruct
+    public void registerMetrics() {
+        meterRegistry.gauge("webhook.queue.depth", queued);
+        meterRegistry.gauge("webhook.inflight", inFlight);
+    }
+
+    // Возвращает false, если полоса чата переполнена и обновление не принято
+    public boolean submit(Update update) {
+        queued.incrementAndGet();
+        if (updateDispatcher.dispatch(chatKey(update), () -> process(update))) {
+            return true;
+        }
+        queued.decrementAndGet();
+        log.warn("Dispatcher lane is full, rejecting update {}", update.getUpdateId());
+        return false;
+    }
+
+    // Ключ упорядочивания: чат сообщения; для колбэков — нажавший пользователь, а не чат с кнопкой.
+    // Кнопки записи висят на посте канала: ключ по чату свел бы всю волну нажатий в одну полосу.
+    // В личном чате id пользователя совпадает с id чата, так что порядок его сообщений и нажатий сохраняется.
+    private long chatKey(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery()) {
+            return update.getCallbackQuery().getFrom().getId();
+        }
+        return 0L;
+    }
+
+    private void process(Update update) {
+        queued.decrementAndGet();
+        inFlight.incrementAndGet();
+        try {
+            BotApiMethod<?> reply = botController.onWebhookUpdateReceived(update);
+            if (reply != null) {
+                // Полоса не ждет доставки: порядок ответов в одном чате соблюдает сам шлюз
+                sendGateway.send(reply).exceptionally(e -> {
+                    log.error("Error sending reply for update {}", update.getUpdateId(), e);
+                    return null;
+                });
+            }
+        } catch (Exception e) {
+            log.error("Error processing update {}", update.getUpdateId(), e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
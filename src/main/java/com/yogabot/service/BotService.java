@@ -1,8 +1,12 @@
 package com.yogabot.service;
 
+import com.yogabot.model.AttendanceReport;
 import com.yogabot.model.BotUser;
 import com.yogabot.model.Schedule;
 import com.yogabot.model.Subscription;
+import com.yogabot.util.CallbackData;
+import com.yogabot.util.MessageTemplate;
+import com.yogabot.util.RenderFormats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,10 +18,11 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKe
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,6 +33,15 @@ public class BotService {
     @Autowired
     private SupabaseService supabaseService;
 
+    @Autowired
+    private AsyncSupabaseService asyncSupabaseService;
+
+    @Autowired
+    private ScheduleCache scheduleCache;
+
+    @Autowired
+    private ScheduleRenderCache renderCache;
+
     @Value("${admin.telegram.id}")
     private Long adminTelegramId;
 
@@ -35,33 +49,54 @@ public class BotService {
         return telegramId != null && telegramId.equals(adminTelegramId);
     }
 
-    private String escapeHtml(String text) {
-        if (text == null) return "";
-        return text.replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;");
-    }
+    // Шаблоны сообщений разбираются один раз при загрузке класса
+    private static final MessageTemplate WEEKLY_DAY = MessageTemplate.compile("🔸 <b>{0:day}, {0:dmy}:</b>\n");
+    private static final MessageTemplate WEEKLY_MORNING = MessageTemplate.compile("   🌅 {0:time} - {1:html}\n");
+    private static final MessageTemplate WEEKLY_EVENING = MessageTemplate.compile("   🌇 {0:time} - {1:html}\n");
+    private static final MessageTemplate REPORT_DAY = MessageTemplate.compile("🔹 <b>{0}{1:day} ({1:dm})</b>\n");
+    private static final MessageTemplate REPORT_MORNING = MessageTemplate.compile("   🌅 Утро ({0:time}): {1:html}\n");
+    private static final MessageTemplate REPORT_EVENING = MessageTemplate.compile("   🌇 Вечер ({0:time}): {1:html}\n");
+    private static final MessageTemplate ATTENDEE = MessageTemplate.compile("      {0}. {1:html}\n");
+    private static final MessageTemplate REMINDER_DAY = MessageTemplate.compile("📣 <b>Напоминание о занятиях!</b>\n\n🗓 {0:day} ({0:dm})\n\n");
+    private static final MessageTemplate REMINDER_MORNING = MessageTemplate.compile("🌅 Утро {0:time}: {1:html}\n");
+    private static final MessageTemplate REMINDER_EVENING = MessageTemplate.compile("🌇 Вечер {0:time}: {1:html}\n");
+
+    private static final MessageTemplate DAY_BUTTON = MessageTemplate.compile("{0:day} ({0:dm})");
+
+    private static final String TODAY_LABEL = "СЕГОДНЯ ";
+    private static final String TOMORROW_LABEL = "ЗАВТРА ";
 
+    // Самая частая команда: при неизменном расписании отдается готовый текст из кэша
     public String getWeeklySchedule() {
-        LocalDate today = LocalDate.now();
-        List<Schedule> schedules = supabaseService.getWeeklySchedule(today);
-        StringBuilder sb = new StringBuilder("📅 <b>Расписание на ближайшие 7 дней:</b>\n\n");
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+        LocalDate today = ScheduleRenderCache.today();
+        long version = scheduleCache.getVersion();
+        String cached = renderCache.get(ScheduleRenderCache.WEEKLY_TEXT, today, version);
+        if (cached != null) {
+            return cached;
+        }
 
+        List<Schedule> schedules = supabaseService.getWeeklySchedule(today);
         if (schedules.isEmpty()) {
             return "❌ Расписание не найдено. Проверьте соединение с БД.";
         }
 
+        String text = renderWeeklySchedule(schedules);
+        renderCache.put(ScheduleRenderCache.WEEKLY_TEXT, today, version, text);
+        return text;
+    }
+
+    static String renderWeeklySchedule(List<Schedule> schedules) {
+        StringBuilder sb = new StringBuilder(1024).append("📅 <b>Расписание на ближайшие 7 дней:</b>\n\n");
+
         for (Schedule schedule : schedules) {
-            sb.append("🔸 <b>").append(getRussianDayName(schedule.getDate().getDayOfWeek()))
-                    .append(", ").append(schedule.getDate().format(dateFormatter)).append(":</b>\n");
+            WEEKLY_DAY.appendTo(sb, schedule.getDate());
 
             if (Boolean.TRUE.equals(schedule.getActive()) && (schedule.getMorningTime() != null || schedule.getEveningTime() != null)) {
                 if (schedule.getMorningTime() != null) {
-                    sb.append("   🌅 ").append(schedule.getMorningTime()).append(" - ").append(escapeHtml(schedule.getMorningClass())).append("\n");
+                    WEEKLY_MORNING.appendTo(sb, schedule.getMorningTime(), schedule.getMorningClass());
                 }
                 if (schedule.getEveningTime() != null) {
-                    sb.append("   🌇 ").append(schedule.getEveningTime()).append(" - ").append(escapeHtml(schedule.getEveningClass())).append("\n");
+                    WEEKLY_EVENING.appendTo(sb, schedule.getEveningTime(), schedule.getEveningClass());
                 }
             } else {
                 sb.append("   😴 Отдых / Занятий нет.\n");
@@ -71,67 +106,148 @@ public class BotService {
         return sb.toString();
     }
 
+    // Один запрос со встраиванием schedule -> subscriptions -> bot_users вместо выборок по каждому занятию
     public String getTodayTomorrowSubscriptions() {
-        LocalDate today = LocalDate.now();
-        StringBuilder sb = new StringBuilder("📋 <b>Список записавшихся (Сегодня и Завтра):</b>\n\n");
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd.MM");
+        LocalDate today = ScheduleRenderCache.today();
+        AttendanceReport report = supabaseService.getAttendanceReport(today, today.plusDays(1));
+        if (report == null) {
+            // Встраивание недоступно (например, нет внешнего ключа) — параллельные выборки по занятиям
+            return getTodayTomorrowSubscriptionsFanOut(today);
+        }
 
-        for (int i = 0; i < 2; i++) {
-            LocalDate date = today.plusDays(i);
-            Schedule schedule = supabaseService.getScheduleByDate(date);
-            String dayLabel = (i == 0) ? "СЕГОДНЯ" : "ЗАВТРА";
+        StringBuilder sb = new StringBuilder(1024).append("📋 <b>Список записавшихся (Сегодня и Завтра):</b>\n\n");
+        appendReportDay(sb, report.getDay(today), TODAY_LABEL);
+        appendReportDay(sb, report.getDay(today.plusDays(1)), TOMORROW_LABEL);
+        return sb.toString();
+    }
 
-            sb.append("🔹 <b>").append(dayLabel).append(" ")
-                    .append(getRussianDayName(date.getDayOfWeek())).append(" (")
-                    .append(date.format(dateFormatter)).append(")</b>\n");
+    // Записи на неделю вперед, тоже одним запросом
+    public String getWeeklyAttendance() {
+        LocalDate today = ScheduleRenderCache.today();
+        AttendanceReport report = supabaseService.getAttendanceReport(today, today.plusDays(6));
+        if (report == null) {
+            return "❌ Не удалось получить записи. Проверьте соединение с БД.";
+        }
 
-            if (schedule == null || !Boolean.TRUE.equals(schedule.getActive())) {
-                sb.append("   <i>Занятий нет.</i>\n\n");
-                continue;
-            }
+        StringBuilder sb = new StringBuilder(1024).append("📊 <b>Записи на ближайшие 7 дней:</b>\n\n");
+        for (int i = 0; i < 7; i++) {
+            appendReportDay(sb, report.getDay(today.plusDays(i)), null);
+        }
+        return sb.toString();
+    }
 
-            if (schedule.getMorningTime() != null) {
-                sb.append("   🌅 Утро (").append(schedule.getMorningTime()).append("): ").append(escapeHtml(schedule.getMorningClass())).append("\n");
-                sb.append(getFormattedUserList(schedule.getId(), "MORNING")).append("\n");
-            }
+    static void appendReportDay(StringBuilder sb, AttendanceReport.Day day, String dayLabel) {
+        appendDaySection(sb, day.getDate(), dayLabel, day.getSchedule(),
+                day.getAttendees("MORNING"), day.getAttendees("EVENING"));
+    }
 
-            if (schedule.getEveningTime() != null) {
-                sb.append("   🌇 Вечер (").append(schedule.getEveningTime()).append("): ").append(escapeHtml(schedule.getEveningClass())).append("\n");
-                sb.append(getFormattedUserList(schedule.getId(), "EVENING")).append("\n");
-            }
-            sb.append("\n");
+    // Списки записавшихся дописываются прямо в буфер; null — не удалось определить занятие
+    static void appendDaySection(StringBuilder sb, LocalDate date, String dayLabel, Schedule schedule,
+                                 List<String> morning, List<String> evening) {
+        REPORT_DAY.appendTo(sb, dayLabel, date);
+
+        if (schedule == null || !Boolean.TRUE.equals(schedule.getActive())) {
+            sb.append("   <i>Занятий нет.</i>\n\n");
+            return;
+        }
+
+        if (schedule.getMorningTime() != null) {
+            REPORT_MORNING.appendTo(sb, schedule.getMorningTime(), schedule.getMorningClass());
+            appendAttendees(sb, morning).append("\n");
+        }
+        if (schedule.getEveningTime() != null) {
+            REPORT_EVENING.appendTo(sb, schedule.getEveningTime(), schedule.getEveningClass());
+            appendAttendees(sb, evening).append("\n");
+        }
+        sb.append("\n");
+    }
+
+    // Запасной путь: независимые выборки идут параллельно (расписания обоих дней, затем списки по каждому занятию),
+    // текст собирается в потоке вызова после получения всех данных
+    private String getTodayTomorrowSubscriptionsFanOut(LocalDate today) {
+        List<CompletableFuture<DaySubscriptions>> days = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            LocalDate date = today.plusDays(i);
+            String dayLabel = (i == 0) ? TODAY_LABEL : TOMORROW_LABEL;
+            days.add(asyncSupabaseService.getScheduleByDate(date)
+                    .thenCompose(schedule -> loadDaySubscriptions(date, dayLabel, schedule)));
         }
 
+        StringBuilder sb = new StringBuilder(1024).append("📋 <b>Список записавшихся (Сегодня и Завтра):</b>\n\n");
+        for (CompletableFuture<DaySubscriptions> future : days) {
+            DaySubscriptions day = future.join();
+            appendDaySection(sb, day.date, day.dayLabel, day.schedule, day.morning, day.evening);
+        }
         return sb.toString();
     }
 
-    private String getFormattedUserList(Long scheduleId, String classType) {
-        if (scheduleId == null) return "   ⚠️ Ошибка ID расписания\n";
+    private CompletableFuture<DaySubscriptions> loadDaySubscriptions(LocalDate date, String dayLabel, Schedule schedule) {
+        boolean active = schedule != null && Boolean.TRUE.equals(schedule.getActive());
+        CompletableFuture<List<String>> morning = active && schedule.getMorningTime() != null
+                ? getAttendeeNames(schedule.getId(), "MORNING") : CompletableFuture.completedFuture(null);
+        CompletableFuture<List<String>> evening = active && schedule.getEveningTime() != null
+                ? getAttendeeNames(schedule.getId(), "EVENING") : CompletableFuture.completedFuture(null);
 
-        List<Subscription> subscriptions = supabaseService.getSubscriptionsForClass(scheduleId, classType);
+        return morning.thenCombine(evening,
+                (morningNames, eveningNames) -> new DaySubscriptions(date, dayLabel, schedule, morningNames, eveningNames));
+    }
 
-        if (subscriptions.isEmpty()) {
-            return "      — <i>Нет записей</i>\n";
-        }
+    private CompletableFuture<List<String>> getAttendeeNames(Long scheduleId, String classType) {
+        if (scheduleId == null) return CompletableFuture.completedFuture(null);
 
-        List<Long> userIds = subscriptions.stream()
-                .map(Subscription::getTelegramId)
-                .distinct()
-                .collect(Collectors.toList());
+        return asyncSupabaseService.getSubscriptionsForClass(scheduleId, classType).thenCompose(subscriptions -> {
+            if (subscriptions.isEmpty()) {
+                return CompletableFuture.completedFuture(Collections.<String>emptyList());
+            }
 
-        List<BotUser> users = supabaseService.getUsersByIds(userIds);
+            List<Long> userIds = subscriptions.stream()
+                    .map(Subscription::getTelegramId)
+                    .distinct()
+                    .collect(Collectors.toList());
+
+            return asyncSupabaseService.getUsersByIds(userIds).thenApply(users -> toDisplayNames(subscriptions, users));
+        });
+    }
+
+    private List<String> toDisplayNames(List<Subscription> subscriptions, List<BotUser> users) {
         Map<Long, BotUser> userMap = users.stream()
                 .collect(Collectors.toMap(BotUser::getTelegramId, user -> user, (u1, u2) -> u1));
 
-        StringBuilder userList = new StringBuilder();
-        for (int i = 0; i < subscriptions.size(); i++) {
-            Subscription sub = subscriptions.get(i);
+        List<String> names = new ArrayList<>(subscriptions.size());
+        for (Subscription sub : subscriptions) {
             BotUser user = userMap.get(sub.getTelegramId());
-            String displayName = (user != null) ? user.getDisplayName() : "ID: " + sub.getTelegramId();
+            names.add((user != null) ? user.getDisplayName() : "ID: " + sub.getTelegramId());
+        }
+        return names;
+    }
+
+    private static StringBuilder appendAttendees(StringBuilder sb, List<String> names) {
+        if (names == null) {
+            return sb.append("   ⚠️ Ошибка ID расписания\n");
+        }
+        if (names.isEmpty()) {
+            return sb.append("      — <i>Нет записей</i>\n");
+        }
+        for (int i = 0; i < names.size(); i++) {
+            ATTENDEE.appendTo(sb, i + 1, names.get(i));
+        }
+        return sb;
+    }
 
-            userList.append("      ").append(i + 1).append(". ").append(escapeHtml(displayName)).append("\n");
+    private static final class DaySubscriptions {
+        private final LocalDate date;
+        private final String dayLabel;
+        private final Schedule schedule;
+        private final List<String> morning;
+        private final List<String> evening;
+
+        private DaySubscriptions(LocalDate date, String dayLabel, Schedule schedule, List<String> morning, List<String> evening) {
+            this.date = date;
+            this.dayLabel = dayLabel;
+            this.schedule = schedule;
+            this.morning = morning;
+            this.evening = evening;
         }
-        return userList.toString();
     }
 
     public SendMessage createNotificationMessage(LocalDate date) {
@@ -144,16 +260,13 @@ public class BotService {
             return message;
         }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("📣 <b>Напоминание о занятиях!</b>\n\n")
-                .append("🗓 ").append(getRussianDayName(date.getDayOfWeek()))
-                .append(" (").append(date.format(DateTimeFormatter.ofPattern("dd.MM"))).append(")\n\n");
+        StringBuilder sb = REMINDER_DAY.appendTo(new StringBuilder(1024), date);
 
         boolean hasMorning = schedule.getMorningTime() != null;
         boolean hasEvening = schedule.getEveningTime() != null;
 
-        if (hasMorning) sb.append("🌅 Утро ").append(schedule.getMorningTime()).append(": ").append(escapeHtml(schedule.getMorningClass())).append("\n");
-        if (hasEvening) sb.append("🌇 Вечер ").append(schedule.getEveningTime()).append(": ").append(escapeHtml(schedule.getEveningClass())).append("\n");
+        if (hasMorning) REMINDER_MORNING.appendTo(sb, schedule.getMorningTime(), schedule.getMorningClass());
+        if (hasEvening) REMINDER_EVENING.appendTo(sb, schedule.getEveningTime(), schedule.getEveningClass());
 
         message.setText(sb.toString());
 
@@ -161,8 +274,8 @@ public class BotService {
             InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
             List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
-            if (hasMorning) rows.add(createSubscribeRow("Утро", "morning", schedule.getId()));
-            if (hasEvening) rows.add(createSubscribeRow("Вечер", "evening", schedule.getId()));
+            if (hasMorning) rows.add(createSubscribeRow("Утро", "morning", schedule.getId(), date));
+            if (hasEvening) rows.add(createSubscribeRow("Вечер", "evening", schedule.getId(), date));
 
             markup.setKeyboard(rows);
             message.setReplyMarkup(markup);
@@ -172,22 +285,43 @@ public class BotService {
     }
 
     // --- НОВЫЙ МЕТОД ДЛЯ МЕНЮ РЕДАКТИРОВАНИЯ ---
-    public InlineKeyboardMarkup getScheduleKeyboard(String prefixCallback) {
-        InlineKeyboardMarkup keyboardMarkup = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+    public InlineKeyboardMarkup getScheduleKeyboard(CallbackData.Op dayOp) {
+        LocalDate startDay = ScheduleRenderCache.today();
+        String kind = keyboardKind(dayOp);
+        long version = scheduleCache.getVersion();
+        if (kind != null) {
+            InlineKeyboardMarkup cached = renderCache.get(kind, startDay, version);
+            if (cached != null) {
+                return cached;
+            }
+        }
 
-        LocalDate startDay = LocalDate.now();
         List<Schedule> schedules = supabaseService.getWeeklySchedule(startDay);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM");
+        InlineKeyboardMarkup keyboardMarkup = buildScheduleKeyboard(dayOp, schedules);
+        // Пустой список — скорее всего ошибка БД, такую клавиатуру не запоминаем
+        if (kind != null && !schedules.isEmpty()) {
+            renderCache.put(kind, startDay, version, keyboardMarkup);
+        }
+        return keyboardMarkup;
+    }
 
-        for (Schedule schedule : schedules) {
-            String dayName = getRussianDayName(schedule.getDate().getDayOfWeek());
-            String buttonText = dayName + " (" + schedule.getDate().format(formatter) + ")";
+    private static String keyboardKind(CallbackData.Op dayOp) {
+        switch (dayOp) {
+            case EDIT_DAY: return ScheduleRenderCache.EDIT_KEYBOARD;
+            case DELETE_DAY: return ScheduleRenderCache.DELETE_KEYBOARD;
+            default: return null;
+        }
+    }
+
+    private InlineKeyboardMarkup buildScheduleKeyboard(CallbackData.Op dayOp, List<Schedule> schedules) {
+        InlineKeyboardMarkup keyboardMarkup = new InlineKeyboardMarkup();
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
 
+        for (Schedule schedule : schedules) {
             List<InlineKeyboardButton> row = new ArrayList<>();
             InlineKeyboardButton button = new InlineKeyboardButton();
-            button.setText(buttonText);
-            button.setCallbackData(prefixCallback + schedule.getDate());
+            button.setText(DAY_BUTTON.render(schedule.getDate()));
+            button.setCallbackData(CallbackData.day(dayOp, schedule.getDate()));
 
             row.add(button);
             rows.add(row);
@@ -196,7 +330,7 @@ public class BotService {
         List<InlineKeyboardButton> backRow = new ArrayList<>();
         InlineKeyboardButton backButton = new InlineKeyboardButton();
         backButton.setText("🔙 Назад");
-        backButton.setCallbackData("back_to_edit");
+        backButton.setCallbackData(CallbackData.of(CallbackData.Op.BACK_TO_EDIT));
         backRow.add(backButton);
         rows.add(backRow);
 
@@ -204,13 +338,14 @@ public class BotService {
         return keyboardMarkup;
     }
 
-    private List<InlineKeyboardButton> createSubscribeRow(String label, String type, Long scheduleId) {
+    // Дата занятия передается в колбэке (yyyyMMdd), чтобы при записи не искать расписание по id
+    private List<InlineKeyboardButton> createSubscribeRow(String label, String type, Long scheduleId, LocalDate date) {
         List<InlineKeyboardButton> row = new ArrayList<>();
         InlineKeyboardButton sub = new InlineKeyboardButton("📝 " + label);
-        sub.setCallbackData("subscribe_" + type + "_" + scheduleId);
+        sub.setCallbackData(CallbackData.subscribe(type, scheduleId, date));
 
         InlineKeyboardButton unsub = new InlineKeyboardButton("❌ Отмена");
-        unsub.setCallbackData("unsubscribe_" + type + "_" + scheduleId);
+        unsub.setCallbackData(CallbackData.unsubscribe(type, scheduleId, date));
 
         row.add(sub);
         row.add(unsub);
@@ -218,15 +353,6 @@ public class BotService {
     }
 
     public String getRussianDayName(DayOfWeek dayOfWeek) {
-        switch (dayOfWeek) {
-            case MONDAY: return "Понедельник";
-            case TUESDAY: return "Вторник";
-            case WEDNESDAY: return "Среда";
-            case THURSDAY: return "Четверг";
-            case FRIDAY: return "Пятница";
-            case SATURDAY: return "Суббота";
-            case SUNDAY: return "Воскресенье";
-            default: return "";
-        }
+        return RenderFormats.dayName(dayOfWeek);
     }
 }
\ No newline at end of file
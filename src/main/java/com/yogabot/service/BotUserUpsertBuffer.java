@@ -0,0 +1,79 @@
+package com.yogabot.service;
+
+import com.yogabot.model.BotUser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Буфер отложенной записи профилей пользователей.
+// Отпечаток (имя, фамилия, username) по telegram_id отсекает неизменившиеся профили,
+// изменившиеся копятся до следующего пакетного upsert (последняя версия профиля выигрывает).
+// Отпечаток запоминается только после успешной записи, иначе потерянный пакет подавил бы следующие обновления.
+@Component
+public class BotUserUpsertBuffer {
+
+    @Value("${bot-users.fingerprint.max-size:10000}")
+    private int maxFingerprints;
+
+    // Сам кортеж полей, а не его хэш: при совпадении хэшей изменение профиля не должно теряться
+    private record Fingerprint(String firstName, String lastName, String username) {}
+
+    private final Map<Long, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final Map<Long, BotUser> pending = new ConcurrentHashMap<>();
+
+    // Возвращает false, если профиль не изменился с последней записи
+    public boolean offer(BotUser user) {
+        Long telegramId = user.getTelegramId();
+        if (telegramId == null) return false;
+
+        if (fingerprintOf(user).equals(fingerprints.get(telegramId))) {
+            return false;
+        }
+
+        pending.put(telegramId, user);
+        return true;
+    }
+
+    // Профили записаны в Supabase
+    public void markWritten(List<BotUser> users) {
+        // Простое ограничение памяти: после сброса каждый профиль будет записан еще один раз
+        if (fingerprints.size() + users.size() > maxFingerprints) {
+            fingerprints.clear();
+        }
+        for (BotUser user : users) {
+            fingerprints.put(user.getTelegramId(), fingerprintOf(user));
+        }
+    }
+
+    public List<BotUser> drain(int maxBatch) {
+        List<BotUser> batch = new ArrayList<>(Math.min(maxBatch, pending.size()));
+        Iterator<Long> keys = pending.keySet().iterator();
+        while (keys.hasNext() && batch.size() < maxBatch) {
+            BotUser user = pending.remove(keys.next());
+            if (user != null) {
+                batch.add(user);
+            }
+        }
+        return batch;
+    }
+
+    // Возврат неудачного пакета: более новая версия профиля, пришедшая за время записи, не затирается
+    public void requeue(List<BotUser> users) {
+        for (BotUser user : users) {
+            pending.putIfAbsent(user.getTelegramId(), user);
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    private static Fingerprint fingerprintOf(BotUser user) {
+        return new Fingerprint(user.getFirstName(), user.getLastName(), user.getUsername());
+    }
+}
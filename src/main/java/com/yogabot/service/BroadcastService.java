@@ -0,0 +1,141 @@
+package com.yogabot.service;
+
+import com.yogabot.model.BroadcastReport;
+import com.yogabot.model.BroadcastReport.DeliveryStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// Рассылка личных сообщений: получатели читаются из Supabase постранично,
+// сообщение рендерится один раз, лимиты и повторы обеспечивает TelegramSendGateway
+@Service
+public class BroadcastService {
+
+    private static final Logger log = LoggerFactory.getLogger(BroadcastService.class);
+
+    @Autowired
+    private TelegramSendGateway sendGateway;
+
+    @Value("${broadcast.page-size:500}")
+    private int pageSize;
+
+    @Value("${broadcast.max-in-flight:64}")
+    private int maxInFlight;
+
+    private ExecutorService coordinator;
+
+    private volatile BroadcastReport lastReport;
+
+    // Источник получателей: страница chat id начиная с offset
+    public interface RecipientPager {
+        List<Long> page(int offset, int limit);
+    }
+
+    @PostConstruct
+    public void init() {
+        coordinator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "broadcast-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+    }
+
+    public CompletableFuture<BroadcastReport> broadcastAsync(String name, SendMessage template, RecipientPager pager) {
+        return CompletableFuture.supplyAsync(() -> broadcast(name, template, pager), coordinator);
+    }
+
+    public BroadcastReport broadcast(String name, SendMessage template, RecipientPager pager) {
+        BroadcastReport report = new BroadcastReport(name);
+        lastReport = report;
+
+        // Ограничение числа отправок в работе, чтобы не вычитывать всех получателей в память заранее
+        Semaphore inFlight = new Semaphore(maxInFlight);
+
+        try {
+            int offset = 0;
+            while (true) {
+                List<Long> page;
+                try {
+                    page = pager.page(offset, pageSize);
+                } catch (RuntimeException e) {
+                    // Дальше получателей не прочитать: уже начатые отправки дожидаемся, а рассылку помечаем неполной
+                    log.error("Broadcast '{}' stopped: failed to read recipients at offset {}", name, offset, e);
+                    report.markIncomplete("recipients unavailable after " + offset);
+                    break;
+                }
+                for (Long chatId : page) {
+                    if (!report.register(chatId)) continue;
+
+                    inFlight.acquire();
+                    sendGateway.sendBulk(copyFor(template, chatId))
+                            .whenComplete((result, error) -> {
+                                report.record(chatId, statusOf(error));
+                                inFlight.release();
+                            });
+                }
+                if (page.size() < pageSize) break;
+                offset += page.size();
+            }
+            // Дожидаемся завершения всех отправок
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Broadcast '{}' interrupted", name);
+        }
+
+        report.finish();
+        if (report.isComplete()) {
+            log.info(report.summary());
+        } else {
+            log.warn(report.summary());
+        }
+        return report;
+    }
+
+    public BroadcastReport getLastReport() {
+        return lastReport;
+    }
+
+    private DeliveryStatus statusOf(Throwable error) {
+        if (error == null) {
+            return DeliveryStatus.SENT;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TelegramApiRequestException) {
+            Integer code = ((TelegramApiRequestException) cause).getErrorCode();
+            // Пользователь заблокировал бота
+            if (code != null && code == 403) {
+                return DeliveryStatus.BLOCKED;
+            }
+        }
+        return DeliveryStatus.FAILED;
+    }
+
+    private SendMessage copyFor(SendMessage template, Long chatId) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(template.getText());
+        message.setParseMode(template.getParseMode());
+        message.setReplyMarkup(template.getReplyMarkup());
+        return message;
+    }
+}
@@ -1,20 +1,25 @@
 package com.yogabot.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import javax.annotation.PostConstruct;
-import java.time.LocalDateTime;
 
 @Service
 public class KeepAliveService {
 
+    private static final Logger log = LoggerFactory.getLogger(KeepAliveService.class);
+
     @Value("${app.url:https://yoga-bot-ubxp.onrender.com}")
     private String appUrl;
 
     @Autowired
+    @Qualifier("restTemplate")
     private RestTemplate restTemplate; // Используем бин вместо new
 
     // Пинг каждые 14 минут
@@ -22,10 +27,9 @@ public class KeepAliveService {
     public void keepAlive() {
         try {
             String response = restTemplate.getForObject(appUrl + "/health", String.class);
-            System.out.println("✅ Keep-alive ping successful: " + LocalDateTime.now());
-            System.out.println("Response: " + response);
+            log.debug("Keep-alive ping successful, response: {}", response);
         } catch (Exception e) {
-            System.err.println("❌ Keep-alive ping failed at " + LocalDateTime.now() + ": " + e.getMessage());
+            log.warn("Keep-alive ping failed: {}", e.getMessage());
         }
     }
 
@@ -34,16 +38,15 @@ public class KeepAliveService {
     public void frequentPing() {
         try {
             restTemplate.getForObject(appUrl + "/ping", String.class);
-            System.out.println("🔔 Frequent ping: " + LocalDateTime.now());
+            log.debug("Frequent ping successful");
         } catch (Exception e) {
-            System.err.println("❌ Frequent ping failed: " + e.getMessage());
+            log.warn("Frequent ping failed: {}", e.getMessage());
         }
     }
 
     @PostConstruct
     public void init() {
-        System.out.println("🚀 Keep-alive service started at: " + LocalDateTime.now());
-        // Сразу делаем первый пинг при запуске
-        keepAlive();
+        log.info("Keep-alive service started for {}", appUrl);
+        // Первый пинг выполнит планировщик (fixedRate стартует без задержки), старт не блокируем
     }
 }
\ No newline at end of file
@@ -1,26 +1,46 @@
 package com.yogabot.service;
 
-import com.yogabot.controller.BotController;
+import com.yogabot.model.Schedule;
+import com.yogabot.util.MessageTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 
 @Service
 public class NotificationService {
 
+    private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
+
+    private static final MessageTemplate PROMOTED = MessageTemplate.compile(
+            "🎉 Освободилось место! Вы записаны из листа ожидания:\n🗓 {0:day} ({0:dm}), {1:time} — {2:html}");
+
     @Autowired
     private BotService botService;
 
     @Autowired
-    private BotController botController;
+    private TelegramSendGateway sendGateway;
+
+    @Autowired
+    private BroadcastService broadcastService;
+
+    @Autowired
+    private SupabaseService supabaseService;
 
     @Value("${telegram.channel.id}")
     private String channelId;
 
+    // Личные напоминания: subscribers — записавшимся на завтра, all — всем пользователям бота
+    @Value("${notification.dm.enabled:false}")
+    private boolean dmEnabled;
+
+    @Value("${notification.dm.audience:subscribers}")
+    private String dmAudience;
+
     // Флаг состояния уведомлений (по умолчанию включены)
     private boolean notificationsEnabled = true;
 
@@ -38,7 +58,7 @@ public class NotificationService {
     @Scheduled(cron = "0 0 16 * * ?", zone = "Europe/Moscow")
     public void sendDailyNotification() {
         if (!notificationsEnabled) {
-            System.out.println("🔕 Notifications are disabled. Skipping daily schedule sending.");
+            log.info("Notifications are disabled, skipping daily schedule sending");
             return;
         }
 
@@ -47,24 +67,58 @@ public class NotificationService {
             SendMessage message = botService.createNotificationMessage(tomorrow);
             message.setChatId(channelId);
 
-            botController.execute(message);
-            System.out.println("✅ Sent notification to channel at: " + LocalDateTime.now());
+            sendGateway.sendAndWait(message);
+            log.info("Sent notification to channel for {}", tomorrow);
+
+            if (dmEnabled) {
+                sendDirectReminders(tomorrow, message);
+            }
 
         } catch (Exception e) {
-            System.err.println("❌ Error sending notification: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error sending notification", e);
         }
     }
 
+    // Рассылка идет в фоне, чтобы не занимать поток планировщика
+    private void sendDirectReminders(LocalDate date, SendMessage rendered) {
+        BroadcastService.RecipientPager pager;
+        if ("all".equalsIgnoreCase(dmAudience)) {
+            pager = supabaseService::getBotUserIdsPage;
+        } else {
+            Schedule schedule = supabaseService.getScheduleByDate(date);
+            if (schedule == null || schedule.getId() == null) {
+                log.info("No schedule for {}, skipping direct reminders", date);
+                return;
+            }
+            pager = (offset, limit) -> supabaseService.getSubscriberIdsPage(schedule.getId(), offset, limit);
+        }
+        broadcastService.broadcastAsync("reminder " + date, rendered, pager);
+    }
+
     // Тестовая отправка
     public void sendTestNotification() {
         try {
             LocalDate tomorrow = LocalDate.now().plusDays(1);
             SendMessage message = botService.createNotificationMessage(tomorrow);
             message.setChatId(channelId);
-            botController.execute(message);
+            sendGateway.sendAndWait(message);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Error sending test notification", e);
         }
     }
+
+    // Личное сообщение тому, кто получил место из листа ожидания; отправка в фоне через шлюз
+    public void sendWaitlistPromotion(Long telegramId, Schedule schedule, String classType) {
+        boolean evening = "EVENING".equals(classType);
+        SendMessage message = new SendMessage();
+        message.setChatId(telegramId.toString());
+        message.setParseMode("HTML");
+        message.setText(PROMOTED.render(schedule.getDate(),
+                evening ? schedule.getEveningTime() : schedule.getMorningTime(),
+                evening ? schedule.getEveningClass() : schedule.getMorningClass()));
+        sendGateway.send(message).exceptionally(e -> {
+            log.error("Error sending waitlist promotion to {}", telegramId, e);
+            return null;
+        });
+    }
 }
\ No newline at end of file
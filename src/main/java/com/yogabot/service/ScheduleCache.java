@@ -0,0 +1,201 @@
+package com.yogabot.service;
+
+import com.yogabot.model.Schedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Кэш расписания по дням. Хранит и отсутствующие в БД дни (schedule == null),
+// чтобы повторные запросы к пустым датам тоже не уходили в Supabase.
+// Второй индекс по id расписания нужен для колбэков записи, которые знают только id.
+@Component
+public class ScheduleCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleCache.class);
+
+    @Value("${schedule.cache.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${schedule.cache.max-size:400}")
+    private int maxSize;
+
+    // Отсортированная карта: диапазон недели читается через subMap, вытеснение идет с самых ранних дат
+    private final ConcurrentSkipListMap<LocalDate, Entry> entries = new ConcurrentSkipListMap<>();
+    private final Map<Long, Schedule> byId = new ConcurrentHashMap<>();
+
+    // Растет при каждом изменении содержимого расписания; по нему инвалидируются отрендеренные сообщения
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static final class Entry {
+        private final Schedule schedule;
+        private final long loadedAt;
+
+        private Entry(Schedule schedule, long loadedAt) {
+            this.schedule = schedule;
+            this.loadedAt = loadedAt;
+        }
+
+        // null означает, что дня нет в БД
+        public Schedule getSchedule() { return schedule; }
+    }
+
+    // Возвращает запись дня или null, если ее нет в кэше либо она устарела
+    public Entry get(LocalDate date) {
+        Entry entry = entries.get(date);
+        if (entry == null || isExpired(entry, System.nanoTime())) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    // Возвращает расписание на days дней начиная со start, только если в кэше есть все дни диапазона
+    public List<Schedule> getRange(LocalDate start, int days) {
+        List<Schedule> result = collectRange(start, days, false);
+        (result != null ? hits : misses).incrementAndGet();
+        return result;
+    }
+
+    // Последние известные данные без учета TTL: отдаются, пока идет обновление или Supabase недоступен
+    public List<Schedule> getStaleRange(LocalDate start, int days) {
+        return collectRange(start, days, true);
+    }
+
+    public Entry getStale(LocalDate date) {
+        return entries.get(date);
+    }
+
+    // Дата дня по id не меняется, поэтому индекс по id не проверяет TTL
+    public Schedule getById(Long id) {
+        return id != null ? byId.get(id) : null;
+    }
+
+    public void put(LocalDate date, Schedule schedule) {
+        replace(date, new Entry(schedule, System.nanoTime()));
+        evictIfNeeded();
+    }
+
+    // Кладет результат диапазонного запроса: дни, которых нет в ответе, запоминаются как отсутствующие
+    public void putRange(LocalDate start, int days, List<Schedule> schedules) {
+        long now = System.nanoTime();
+        for (int i = 0; i < days; i++) {
+            replace(start.plusDays(i), new Entry(null, now));
+        }
+        for (Schedule schedule : schedules) {
+            if (schedule.getDate() != null) {
+                replace(schedule.getDate(), new Entry(schedule, now));
+            }
+        }
+        evictIfNeeded();
+    }
+
+    public void invalidate(LocalDate date) {
+        unindex(entries.remove(date));
+        version.incrementAndGet();
+    }
+
+    public void clear() {
+        entries.clear();
+        byId.clear();
+        version.incrementAndGet();
+    }
+
+    public long getVersion() { return version.get(); }
+
+    public long getHits() { return hits.get(); }
+
+    public long getMisses() { return misses.get(); }
+
+    public int size() { return entries.size(); }
+
+    public String getStats() {
+        return String.format("Schedule cache: size=%d, hits=%d, misses=%d", size(), getHits(), getMisses());
+    }
+
+    private List<Schedule> collectRange(LocalDate start, int days, boolean allowExpired) {
+        LocalDate end = start.plusDays(days - 1L);
+        ConcurrentNavigableMap<LocalDate, Entry> range = entries.subMap(start, true, end, true);
+        long now = System.nanoTime();
+
+        if (range.size() < days) {
+            return null;
+        }
+
+        List<Schedule> result = new ArrayList<>(days);
+        for (Entry entry : range.values()) {
+            if (!allowExpired && isExpired(entry, now)) {
+                return null;
+            }
+            if (entry.schedule != null) {
+                result.add(entry.schedule);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private void replace(LocalDate date, Entry entry) {
+        Entry previous = entries.put(date, entry);
+        if (previous != null && previous.schedule != null && previous.schedule != entry.schedule) {
+            unindex(previous);
+        }
+        // Повторная загрузка тех же данных по TTL версию не меняет
+        if (previous == null || !sameContent(previous.schedule, entry.schedule)) {
+            version.incrementAndGet();
+        }
+        if (entry.schedule != null && entry.schedule.getId() != null) {
+            byId.put(entry.schedule.getId(), entry.schedule);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        if (entry != null && entry.schedule != null && entry.schedule.getId() != null) {
+            byId.remove(entry.schedule.getId(), entry.schedule);
+        }
+    }
+
+    private static boolean sameContent(Schedule a, Schedule b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        return Objects.equals(a.getId(), b.getId())
+                && Objects.equals(a.getDate(), b.getDate())
+                && Objects.equals(a.getMorningTime(), b.getMorningTime())
+                && Objects.equals(a.getMorningClass(), b.getMorningClass())
+                && Objects.equals(a.getEveningTime(), b.getEveningTime())
+                && Objects.equals(a.getEveningClass(), b.getEveningClass())
+                && Objects.equals(a.getActive(), b.getActive());
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.loadedAt > TimeUnit.MINUTES.toNanos(ttlMinutes);
+    }
+
+    private void evictIfNeeded() {
+        int evicted = 0;
+        while (entries.size() > maxSize) {
+            Map.Entry<LocalDate, Entry> first = entries.pollFirstEntry();
+            if (first == null) break;
+            unindex(first.getValue());
+            evicted++;
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} schedule cache entries", evicted);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.yogabot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+// Заполнение расписания по умолчанию вне пути старта приложения.
+// Пока оно не завершилось, индикатор держит readiness-группу в OUT_OF_SERVICE.
+@Component
+public class ScheduleInitializer implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleInitializer.class);
+
+    @Autowired
+    private SupabaseService supabaseService;
+
+    @Autowired
+    private SeatEngine seatEngine;
+
+    private volatile boolean ready = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread thread = new Thread(this::initialize, "schedule-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void initialize() {
+        long start = System.currentTimeMillis();
+        try {
+            supabaseService.initializeDefaultSchedule();
+            // Счетчики мест нужны до первой волны записей; при ошибке класс догрузится при первом обращении
+            seatEngine.rebuild();
+        } finally {
+            // Ошибка инициализации не должна навсегда оставить приложение неготовым
+            ready = true;
+            log.info("Schedule initialization finished in {} ms", System.currentTimeMillis() - start);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public Health health() {
+        return ready ? Health.up().build() : Health.outOfService().withDetail("schedule", "initializing").build();
+    }
+}
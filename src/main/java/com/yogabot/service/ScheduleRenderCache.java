@@ -0,0 +1,70 @@
+package com.yogabot.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Готовые к отправке представления расписания (текст недели, клавиатуры админки).
+// Для каждого вида хранится одна запись с датой начала и версией данных ScheduleCache:
+// совпали обе — отдаем готовый объект без повторного рендеринга.
+@Component
+public class ScheduleRenderCache {
+
+    public static final String WEEKLY_TEXT = "weekly_text";
+    public static final String EDIT_KEYBOARD = "edit_keyboard";
+    public static final String DELETE_KEYBOARD = "delete_keyboard";
+
+    // Зона расписания: дата представлений и сброс кэша в полночь считаются по ней, а не по зоне контейнера
+    public static final ZoneId ZONE = ZoneId.of("Europe/Moscow");
+
+    // Не дольше TTL кэша расписания, чтобы изменения в БД в обход бота тоже подхватывались
+    @Value("${schedule.cache.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        private final LocalDate start;
+        private final long version;
+        private final Object value;
+        private final long renderedAt;
+
+        private Entry(LocalDate start, long version, Object value, long renderedAt) {
+            this.start = start;
+            this.version = version;
+            this.value = value;
+            this.renderedAt = renderedAt;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String kind, LocalDate start, long version) {
+        Entry entry = entries.get(kind);
+        if (entry == null || entry.version != version || !entry.start.equals(start)
+                || System.nanoTime() - entry.renderedAt > TimeUnit.MINUTES.toNanos(ttlMinutes)) {
+            return null;
+        }
+        return (T) entry.value;
+    }
+
+    // Версию нужно прочитать до загрузки данных, иначе можно сохранить старый рендер под новой версией
+    public void put(String kind, LocalDate start, long version, Object value) {
+        entries.put(kind, new Entry(start, version, value, System.nanoTime()));
+    }
+
+    public static LocalDate today() {
+        return LocalDate.now(ZONE);
+    }
+
+    // Смена дня по Москве: все представления начинаются с новой даты
+    @Scheduled(cron = "0 0 0 * * ?", zone = "Europe/Moscow")
+    public void clear() {
+        entries.clear();
+    }
+}
\ No newline at end of file
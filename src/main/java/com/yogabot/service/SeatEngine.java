@@ -0,0 +1,297 @@
+package com.yogabot.service;
+
+import com.yogabot.model.Schedule;
+import com.yogabot.model.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Места на занятиях с ограниченной вместимостью (Mysore и т.п.). Счетчик занятых мест — атомарный,
+// бронь и освобождение идут в памяти за O(1), а в Supabase запись уходит через журнал SupabaseService.
+// Так волна записей после рассылки в 16:00 не превращается в гонку "прочитать число записей — вставить".
+// Состояние класса загружается из Supabase один раз (при старте для ближайшей недели или при первом обращении)
+// с учетом еще не отправленных записей журнала. Рассчитано на один экземпляр бота.
+// Лист ожидания хранится только в памяти.
+@Component
+public class SeatEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatEngine.class);
+
+    public enum Outcome { UNLIMITED, RESERVED, ALREADY_RESERVED, WAITLISTED, ALREADY_WAITLISTED, UNAVAILABLE }
+
+    @Autowired
+    private SupabaseService supabaseService;
+
+    // 0 — ограничений нет
+    @Value("${seats.capacity:0}")
+    private int capacity;
+
+    // Ограничение действует на занятия, в названии которых есть одно из слов; пусто — на все занятия
+    @Value("${seats.limited-classes:mysore,майсор}")
+    private String limitedClassesConfig;
+
+    private List<String> limitedClasses;
+
+    // Ключ — scheduleId * 2 + (EVENING ? 1 : 0)
+    private final Map<Long, ClassSeats> classes = new ConcurrentHashMap<>();
+
+    public static final class Reservation {
+        private final Outcome outcome;
+        private final int waitlistPosition;
+
+        private Reservation(Outcome outcome, int waitlistPosition) {
+            this.outcome = outcome;
+            this.waitlistPosition = waitlistPosition;
+        }
+
+        public Outcome getOutcome() { return outcome; }
+
+        // Позиция в листе ожидания начиная с 1, иначе 0
+        public int getWaitlistPosition() { return waitlistPosition; }
+    }
+
+    private static final Reservation UNLIMITED = new Reservation(Outcome.UNLIMITED, 0);
+    private static final Reservation RESERVED = new Reservation(Outcome.RESERVED, 0);
+    private static final Reservation ALREADY_RESERVED = new Reservation(Outcome.ALREADY_RESERVED, 0);
+    private static final Reservation UNAVAILABLE = new Reservation(Outcome.UNAVAILABLE, 0);
+
+    private static final class ClassSeats {
+        private final long scheduleId;
+        private final String classType;
+        private final LocalDate date;
+        private final int capacity;
+
+        private final AtomicInteger taken = new AtomicInteger();
+        private final Set<Long> holders = ConcurrentHashMap.newKeySet();
+        // Под монитором объекта, как и переход места из листа ожидания
+        private final Deque<Long> waitlist = new ArrayDeque<>();
+        private volatile boolean loaded;
+
+        private ClassSeats(long scheduleId, String classType, LocalDate date, int capacity) {
+            this.scheduleId = scheduleId;
+            this.classType = classType;
+            this.date = date;
+            this.capacity = capacity;
+        }
+
+        private boolean limited() {
+            return capacity > 0;
+        }
+
+        private boolean tryTake() {
+            while (true) {
+                int current = taken.get();
+                if (current >= capacity) return false;
+                if (taken.compareAndSet(current, current + 1)) return true;
+            }
+        }
+
+        private int positionOf(long telegramId) {
+            int position = 1;
+            for (Long waiting : waitlist) {
+                if (waiting == telegramId) return position;
+                position++;
+            }
+            return 0;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        limitedClasses = new ArrayList<>();
+        for (String keyword : limitedClassesConfig.split(",")) {
+            if (!keyword.isBlank()) {
+                limitedClasses.add(keyword.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    public Reservation reserve(long scheduleId, String classType, long telegramId) {
+        if (capacity <= 0) return UNLIMITED;
+        ClassSeats seats = seatsFor(scheduleId, classType);
+        if (seats == null) return UNAVAILABLE;
+        if (!seats.limited()) return UNLIMITED;
+
+        // Быстрый путь без блокировок: добавление в множество и CAS счетчика
+        if (!seats.holders.add(telegramId)) {
+            return ALREADY_RESERVED;
+        }
+        if (seats.tryTake()) {
+            return RESERVED;
+        }
+        seats.holders.remove(telegramId);
+
+        synchronized (seats) {
+            int position = seats.positionOf(telegramId);
+            if (position > 0) {
+                return new Reservation(Outcome.ALREADY_WAITLISTED, position);
+            }
+            // Место могло освободиться между неудачным CAS и входом в монитор
+            if (seats.tryTake()) {
+                seats.holders.add(telegramId);
+                return RESERVED;
+            }
+            seats.waitlist.addLast(telegramId);
+            return new Reservation(Outcome.WAITLISTED, seats.waitlist.size());
+        }
+    }
+
+    // Освобождает место пользователя. Возвращает telegram_id того, кто занял место из листа ожидания, иначе null.
+    // Снятие брони и передача места — под одним монитором с revokePromotion и листом ожидания.
+    public Long release(long scheduleId, String classType, long telegramId) {
+        ClassSeats seats = classes.get(key(scheduleId, classType));
+        if (seats == null || !seats.limited()) {
+            return null;
+        }
+        synchronized (seats) {
+            if (!seats.holders.remove(telegramId)) {
+                return null;
+            }
+            // Мест больше вместимости (например, лимит уменьшили) — сначала уменьшаем счетчик
+            if (seats.taken.get() <= seats.capacity) {
+                Long next = seats.waitlist.pollFirst();
+                if (next != null) {
+                    seats.holders.add(next);
+                    return next;
+                }
+            }
+            seats.taken.decrementAndGet();
+        }
+        return null;
+    }
+
+    // Место, отданное из листа ожидания, не удалось записать в Supabase. Место не возвращается в счетчик,
+    // иначе его перехватит быстрый путь reserve в обход очереди: оно сразу переходит следующему в листе ожидания,
+    // а неудачник встает в начало очереди за ним. Возвращает нового владельца места, иначе null.
+    // handOff=false (исчерпаны попытки) — место освобождается, пользователь остается первым в очереди.
+    public Long revokePromotion(long scheduleId, String classType, long telegramId, boolean handOff) {
+        ClassSeats seats = classes.get(key(scheduleId, classType));
+        if (seats == null || !seats.limited()) return null;
+        synchronized (seats) {
+            if (!seats.holders.remove(telegramId)) {
+                return null;
+            }
+            Long next = handOff ? seats.waitlist.pollFirst() : null;
+            seats.waitlist.addFirst(telegramId);
+            if (next != null) {
+                seats.holders.add(next);
+                return next;
+            }
+            seats.taken.decrementAndGet();
+            return null;
+        }
+    }
+
+    public boolean leaveWaitlist(long scheduleId, String classType, long telegramId) {
+        ClassSeats seats = classes.get(key(scheduleId, classType));
+        if (seats == null || !seats.limited()) return false;
+        synchronized (seats) {
+            return seats.waitlist.remove(telegramId);
+        }
+    }
+
+    // Загружает счетчики ограниченных занятий ближайшей недели, чтобы первая волна записей не ждала Supabase
+    public void rebuild() {
+        if (capacity <= 0) return;
+        int loaded = 0;
+        for (Schedule schedule : supabaseService.getWeeklySchedule(LocalDate.now())) {
+            if (schedule.getId() == null || !Boolean.TRUE.equals(schedule.getActive())) continue;
+            for (String classType : new String[]{"MORNING", "EVENING"}) {
+                ClassSeats seats = seatsFor(schedule.getId(), classType);
+                if (seats != null && seats.limited()) loaded++;
+            }
+        }
+        log.info("Seat counters rebuilt for {} limited classes", loaded);
+    }
+
+    public String getStats() {
+        StringBuilder sb = new StringBuilder("Seats: capacity=").append(capacity).append('\n');
+        classes.values().stream()
+                .filter(ClassSeats::limited)
+                .sorted((a, b) -> a.date.compareTo(b.date))
+                .forEach(seats -> {
+                    int waiting;
+                    synchronized (seats) {
+                        waiting = seats.waitlist.size();
+                    }
+                    sb.append(seats.date).append(' ').append(seats.classType)
+                            .append(": taken=").append(seats.taken.get()).append('/').append(seats.capacity)
+                            .append(", waitlist=").append(waiting).append('\n');
+                });
+        return sb.toString();
+    }
+
+    // Прошедшие занятия больше не бронируются
+    @Scheduled(cron = "0 5 0 * * ?", zone = "Europe/Moscow")
+    public void evictPast() {
+        LocalDate today = LocalDate.now(ZoneId.of("Europe/Moscow"));
+        classes.values().removeIf(seats -> seats.date.isBefore(today));
+    }
+
+    // null — состояние класса не удалось загрузить
+    private ClassSeats seatsFor(long scheduleId, String classType) {
+        long key = key(scheduleId, classType);
+        ClassSeats seats = classes.get(key);
+        if (seats == null) {
+            Schedule schedule = supabaseService.getScheduleById(scheduleId);
+            if (schedule == null) return null;
+            String className = "EVENING".equals(classType) ? schedule.getEveningClass() : schedule.getMorningClass();
+            seats = classes.computeIfAbsent(key, k ->
+                    new ClassSeats(scheduleId, classType, schedule.getDate(), isLimited(className) ? capacity : 0));
+        }
+        return seats.loaded || !seats.limited() || load(seats) ? seats : null;
+    }
+
+    // Запрос в Supabase идет без блокировки, чтобы освобождение мест и лист ожидания этого класса не ждали сеть;
+    // результат публикуется под монитором. При параллельной загрузке побеждает первая опубликованная.
+    private boolean load(ClassSeats seats) {
+        List<Subscription> stored;
+        try {
+            // Вместе с записями, которые еще лежат в журнале и не дошли до Supabase
+            stored = supabaseService.fetchSubscriptionsForClass(seats.scheduleId, seats.classType);
+        } catch (Exception e) {
+            log.error("Error loading seats for schedule {} {}", seats.scheduleId, seats.classType, e);
+            return false;
+        }
+        synchronized (seats) {
+            if (!seats.loaded) {
+                for (Subscription subscription : stored) {
+                    seats.holders.add(subscription.getTelegramId());
+                }
+                seats.taken.set(seats.holders.size());
+                seats.loaded = true;
+            }
+            return true;
+        }
+    }
+
+    private boolean isLimited(String className) {
+        if (limitedClasses.isEmpty()) return true;
+        if (className == null) return false;
+        String name = className.toLowerCase(Locale.ROOT);
+        for (String keyword : limitedClasses) {
+            if (name.contains(keyword)) return true;
+        }
+        return false;
+    }
+
+    private static long key(long scheduleId, String classType) {
+        return scheduleId * 2 + ("EVENING".equals(classType) ? 1 : 0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,389 @@
+package com.yogabot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Локальный журнал записей/отмен записи (memory-mapped файл). Пользователь получает ответ после записи в журнал,
+// а в Supabase записи уходят пакетами из SupabaseService.replaySubscriptionJournal.
+// Формат: заголовок (magic, позиция первой неотправленной записи) и записи фиксированной длины с CRC.
+// Чтение после сбоя идет от сохраненной позиции до первой записи с нулевой операцией или неверной CRC.
+// Если файл открыть не удалось, журнал недоступен: append возвращает false, и записи идут в Supabase напрямую.
+// Записи, которые Supabase отверг как неверные данные, дописываются в отдельный текстовый файл (dead letter).
+// Неотправленные записи дополнительно проиндексированы в памяти по занятию: чтения накладывают их на ответ Supabase
+// за O(записей этого занятия), не разбирая весь журнал.
+@Component
+public class SubscriptionJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionJournal.class);
+
+    public enum Op { SUBSCRIBE, UNSUBSCRIBE }
+
+    // Политика сброса на диск: always — после каждой записи, interval — периодически, none — на усмотрение ОС
+    public enum FsyncPolicy { ALWAYS, INTERVAL, NONE }
+
+    private static final int MAGIC = 0x594A524E;
+    private static final int HEADER_SIZE = 16;
+    private static final int COMMITTED_OFFSET = 8;
+
+    // op(1) + classType(1) + telegramId(8) + scheduleId(8) + classDate(8) + createdAt(8) + crc(4)
+    private static final int RECORD_SIZE = 38;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    @Value("${journal.path:data/subscriptions.journal}")
+    private String path;
+
+    @Value("${journal.size-kb:1024}")
+    private int sizeKb;
+
+    @Value("${journal.fsync:interval}")
+    private String fsync;
+
+    @Value("${journal.fsync-interval-ms:200}")
+    private long fsyncIntervalMs;
+
+    @Value("${journal.dead-letter-path:data/subscriptions.dead}")
+    private String deadLetterPath;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private FsyncPolicy fsyncPolicy;
+    private boolean available;
+    // Свой поток для fsync, чтобы сброс на диск не ждал за задачами общего планировщика
+    private ScheduledExecutorService flusher;
+
+    // Первая неотправленная запись и конец журнала
+    private int committed;
+    private int end;
+    private boolean dirty;
+
+    // Ключ занятия (scheduleId * 2 + (EVENING ? 1 : 0)) -> telegram_id -> последняя неотправленная операция
+    private final Map<Long, Map<Long, Pending>> pendingByClass = new HashMap<>();
+
+    // count — сколько неотправленных записей этой пары в журнале: индекс очищается, когда отправлена последняя
+    private static final class Pending {
+        private Entry last;
+        private int count;
+    }
+
+    public static final class Entry {
+        private final Op op;
+        private final long telegramId;
+        private final long scheduleId;
+        private final String classType;
+        private final LocalDate classDate;
+        private final long createdAt;
+
+        private Entry(Op op, long telegramId, long scheduleId, String classType, LocalDate classDate, long createdAt) {
+            this.op = op;
+            this.telegramId = telegramId;
+            this.scheduleId = scheduleId;
+            this.classType = classType;
+            this.classDate = classDate;
+            this.createdAt = createdAt;
+        }
+
+        public Op getOp() { return op; }
+        public long getTelegramId() { return telegramId; }
+        public long getScheduleId() { return scheduleId; }
+        public String getClassType() { return classType; }
+        public LocalDate getClassDate() { return classDate; }
+        public long getCreatedAt() { return createdAt; }
+    }
+
+    @PostConstruct
+    public synchronized void open() {
+        fsyncPolicy = FsyncPolicy.valueOf(fsync.trim().toUpperCase());
+        Path file = Paths.get(path);
+        try {
+            map(file);
+            available = true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Subscription journal {} is unavailable, subscriptions will be written to Supabase directly", file, e);
+            return;
+        }
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        log.info("Subscription journal {} opened: {} pending entries, fsync={}", file, pendingCount(), fsyncPolicy);
+    }
+
+    private void map(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int size = Math.max(sizeKb * 1024, HEADER_SIZE + RECORD_SIZE * 16);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.put(HEADER_SIZE, (byte) 0);
+            writeCommitted(HEADER_SIZE);
+            buffer.force();
+        }
+
+        committed = readCommitted();
+        end = committed;
+        pendingByClass.clear();
+        while (end + RECORD_SIZE <= buffer.capacity() && isValidRecord(end)) {
+            index(read(end));
+            end += RECORD_SIZE;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        if (!available) return;
+        buffer.force();
+        channel.close();
+        available = false;
+    }
+
+    public synchronized boolean isAvailable() {
+        return available;
+    }
+
+    // false — журнал переполнен или недоступен, вызывающий должен писать напрямую
+    public synchronized boolean append(Op op, long telegramId, long scheduleId, String classType, LocalDate classDate) {
+        byte type = encodeClassType(classType);
+        if (!available || type < 0) {
+            return false;
+        }
+        if (end + RECORD_SIZE + 1 > buffer.capacity() && !compact()) {
+            log.warn("Subscription journal is full ({} pending entries)", pendingCount());
+            return false;
+        }
+
+        int position = end;
+        buffer.put(position, (byte) (op.ordinal() + 1));
+        buffer.put(position + 1, type);
+        buffer.putLong(position + 2, telegramId);
+        buffer.putLong(position + 10, scheduleId);
+        buffer.putLong(position + 18, classDate != null ? classDate.toEpochDay() : NO_DATE);
+        long createdAt = System.currentTimeMillis();
+        buffer.putLong(position + 26, createdAt);
+        buffer.putInt(position + CRC_OFFSET, crc(position));
+        // Маркер конца: следующая запись еще не написана
+        if (position + RECORD_SIZE < buffer.capacity()) {
+            buffer.put(position + RECORD_SIZE, (byte) 0);
+        }
+        end = position + RECORD_SIZE;
+        index(new Entry(op, telegramId, scheduleId, classType, classDate, createdAt));
+
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            buffer.force(position, Math.min(RECORD_SIZE + 1, buffer.capacity() - position));
+        } else {
+            dirty = true;
+        }
+        return true;
+    }
+
+    // Первые max неотправленных записей в порядке добавления
+    public synchronized List<Entry> peek(int max) {
+        int count = Math.min(max, pendingCount());
+        if (count == 0) return Collections.emptyList();
+
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0, position = committed; i < count; i++, position += RECORD_SIZE) {
+            entries.add(read(position));
+        }
+        return entries;
+    }
+
+    // Последние неотправленные операции по занятию: telegram_id -> операция. Копия, безопасна вне монитора.
+    public synchronized Map<Long, Entry> pendingFor(long scheduleId, String classType) {
+        Map<Long, Pending> pending = pendingByClass.get(classKey(scheduleId, classType));
+        if (pending == null) return Collections.emptyMap();
+
+        Map<Long, Entry> entries = new HashMap<>(pending.size() * 2);
+        pending.forEach((telegramId, op) -> entries.put(telegramId, op.last));
+        return entries;
+    }
+
+    // Последняя неотправленная операция по каждой паре пользователь/занятие
+    public synchronized List<Entry> pendingLastOps() {
+        List<Entry> entries = new ArrayList<>();
+        for (Map<Long, Pending> pending : pendingByClass.values()) {
+            for (Pending op : pending.values()) {
+                entries.add(op.last);
+            }
+        }
+        return entries;
+    }
+
+    // Отмечает count первых записей отправленными. Считается по количеству, а не по позиции,
+    // поэтому корректно и после уплотнения журнала между peek и commit.
+    public synchronized void commit(int count) {
+        if (!available) return;
+        int upTo = Math.min(end, committed + count * RECORD_SIZE);
+        for (int position = committed; position < upTo; position += RECORD_SIZE) {
+            unindex(buffer.getLong(position + 10), decodeClassType(buffer.get(position + 1)), buffer.getLong(position + 2));
+        }
+        committed = upTo;
+        if (committed == end) {
+            // Все отправлено — пишем с начала файла
+            buffer.put(HEADER_SIZE, (byte) 0);
+            committed = HEADER_SIZE;
+            end = HEADER_SIZE;
+        }
+        writeCommitted(committed);
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            buffer.force(0, HEADER_SIZE + 1);
+        } else {
+            dirty = true;
+        }
+    }
+
+    public synchronized int pendingCount() {
+        return available ? (end - committed) / RECORD_SIZE : 0;
+    }
+
+    // Запись, которую Supabase не примет никогда: сохраняется строкой в файл, чтобы ее можно было разобрать и внести вручную
+    public synchronized void deadLetter(Entry entry, String reason) {
+        String line = String.format("%s\t%s\t%d\t%d\t%s\t%s\t%s%n", Instant.now(), entry.getOp(), entry.getTelegramId(),
+                entry.getScheduleId(), entry.getClassType(), entry.getClassDate(), reason.replaceAll("\\s+", " "));
+        try {
+            Path file = Paths.get(deadLetterPath);
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.write(file, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("Failed to write dead letter {}", line.trim(), e);
+        }
+    }
+
+    public synchronized void flush() {
+        try {
+            if (available && dirty && fsyncPolicy == FsyncPolicy.INTERVAL) {
+                buffer.force();
+                dirty = false;
+            }
+        } catch (Exception e) {
+            // Исключение остановило бы периодический сброс, поэтому только логируем
+            log.error("Failed to flush subscription journal", e);
+        }
+    }
+
+    // Переносит неотправленные записи в начало файла, освобождая место за ними
+    private boolean compact() {
+        if (committed == HEADER_SIZE) {
+            return false;
+        }
+        int length = end - committed;
+        byte[] pending = new byte[length];
+        buffer.get(committed, pending);
+        buffer.put(HEADER_SIZE, pending);
+        buffer.put(HEADER_SIZE + length, (byte) 0);
+        committed = HEADER_SIZE;
+        end = HEADER_SIZE + length;
+        writeCommitted(committed);
+        buffer.force();
+        log.info("Subscription journal compacted: {} pending entries", pendingCount());
+        return end + RECORD_SIZE + 1 <= buffer.capacity();
+    }
+
+    private Entry read(int position) {
+        long epochDay = buffer.getLong(position + 18);
+        return new Entry(
+                Op.values()[buffer.get(position) - 1],
+                buffer.getLong(position + 2),
+                buffer.getLong(position + 10),
+                decodeClassType(buffer.get(position + 1)),
+                epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null,
+                buffer.getLong(position + 26));
+    }
+
+    private void index(Entry entry) {
+        Pending pending = pendingByClass.computeIfAbsent(classKey(entry.getScheduleId(), entry.getClassType()), k -> new HashMap<>())
+                .computeIfAbsent(entry.getTelegramId(), k -> new Pending());
+        pending.last = entry;
+        pending.count++;
+    }
+
+    private void unindex(long scheduleId, String classType, long telegramId) {
+        long key = classKey(scheduleId, classType);
+        Map<Long, Pending> byUser = pendingByClass.get(key);
+        if (byUser == null) return;
+        Pending pending = byUser.get(telegramId);
+        if (pending != null && --pending.count == 0) {
+            byUser.remove(telegramId);
+            if (byUser.isEmpty()) {
+                pendingByClass.remove(key);
+            }
+        }
+    }
+
+    private static long classKey(long scheduleId, String classType) {
+        return scheduleId * 2 + ("EVENING".equals(classType) ? 1 : 0);
+    }
+
+    private boolean isValidRecord(int position) {
+        byte op = buffer.get(position);
+        if (op < 1 || op > Op.values().length) return false;
+        return buffer.getInt(position + CRC_OFFSET) == crc(position);
+    }
+
+    private int crc(int position) {
+        CRC32 crc = new CRC32();
+        ByteBuffer record = buffer.duplicate();
+        record.position(position).limit(position + CRC_OFFSET);
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private int readCommitted() {
+        int value = (int) buffer.getLong(COMMITTED_OFFSET);
+        return value >= HEADER_SIZE && value <= buffer.capacity() ? value : HEADER_SIZE;
+    }
+
+    private void writeCommitted(int value) {
+        buffer.putLong(COMMITTED_OFFSET, value);
+    }
+
+    private static byte encodeClassType(String classType) {
+        if ("MORNING".equals(classType)) return 0;
+        if ("EVENING".equals(classType)) return 1;
+        return -1;
+    }
+
+    private static String decodeClassType(byte type) {
+        return type == 0 ? "MORNING" : "EVENING";
+    }
+}
\ No newline at end of file
@@ -1,38 +1,176 @@
 package com.yogabot.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yogabot.config.SupabaseRequestTimeout;
+import com.yogabot.model.AttendanceReport;
 import com.yogabot.model.BotUser;
 import com.yogabot.model.Schedule;
 import com.yogabot.model.Subscription;
+import com.yogabot.util.CircuitBreaker;
+import com.yogabot.util.CircuitOpenException;
+import com.yogabot.util.LatencyHistogram;
+import com.yogabot.util.SingleFlight;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.time.DayOfWeek;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 public class SupabaseService {
 
     private static final Logger log = LoggerFactory.getLogger(SupabaseService.class);
 
+    // Эндпоинты с отдельными автоматами защиты
+    private static final String SCHEDULE_ENDPOINT = "schedule";
+    private static final String ATTENDANCE_ENDPOINT = "attendance";
+    private static final String USERS_ENDPOINT = "bot_users";
+    private static final String SUBSCRIPTIONS_ENDPOINT = "subscriptions";
+
+    // ~12 символов на id: 100 id держат URL удаления около 1.5 КБ при любом размере пакета журнала
+    private static final int DELETE_IDS_PER_REQUEST = 100;
+
     @Autowired
+    @Qualifier("supabaseRestTemplate")
     private RestTemplate restTemplate;
 
+    @Autowired
+    private ScheduleCache scheduleCache;
+
+    @Autowired
+    private BotUserUpsertBuffer botUserUpsertBuffer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SubscriptionJournal subscriptionJournal;
+
+    @Autowired
+    @Qualifier("supabaseExecutor")
+    private ExecutorService supabaseExecutor;
+
+    @Value("${supabase.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    @Value("${supabase.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    @Autowired
+    @Qualifier("supabaseRequestExecutor")
+    private ExecutorService requestExecutor;
+
+    @Value("${supabase.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${supabase.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${supabase.hedge.min-delay-ms:50}")
+    private long hedgeMinDelayMs;
+
+    @Value("${supabase.hedge.max-in-flight:4}")
+    private int hedgeMaxInFlight;
+
+    @Value("${supabase.latency.min-samples:20}")
+    private int latencyMinSamples;
+
+    @Value("${supabase.latency.window-seconds:300}")
+    private long latencyWindowSeconds;
+
+    @Value("${supabase.timeout.p99-multiplier:4}")
+    private double timeoutMultiplier;
+
+    @Value("${supabase.timeout.min-ms:1000}")
+    private long timeoutMinMs;
+
+    @Value("${supabase.timeout.max-ms:10000}")
+    private long timeoutMaxMs;
+
+    // Задержки по операциям чтения (week, day, user, users, subscriptions)
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final AtomicInteger hedgesInFlight = new AtomicInteger();
+    private final AtomicLong hedgesFired = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    // Одинаковые одновременные чтения расписания (промах кэша, фоновое обновление) — один запрос к Supabase на ключ
+    private final SingleFlight<LocalDate, List<Schedule>> weekFlight = new SingleFlight<>();
+    private final SingleFlight<LocalDate, Schedule> dayFlight = new SingleFlight<>();
+    private final SingleFlight<Long, Schedule> idFlight = new SingleFlight<>();
+
+    // Ключи фоновых обновлений кэша, которые уже выполняются
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    @Value("${journal.replay-batch-size:200}")
+    private int journalBatchSize;
+
+    @Value("${bot-users.upsert.batch-size:100}")
+    private int upsertBatchSize;
+
+    @Value("${supabase.stream.page-size:1000}")
+    private int streamPageSize;
+
+    // ObjectReader неизменяем и потокобезопасен, строится один раз на тип строки
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
     @Value("${supabase.url}")
     private String supabaseUrl;
 
     @Value("${supabase.key}")
     private String supabaseKey;
 
+    @PostConstruct
+    public void registerMetrics() {
+        registerFlight("getWeeklySchedule", weekFlight);
+        registerFlight("getScheduleByDate", dayFlight);
+        registerFlight("getScheduleById", idFlight);
+    }
+
     private HttpHeaders createHeaders() {
         HttpHeaders headers = new HttpHeaders();
         headers.set("apikey", supabaseKey);
@@ -46,7 +184,8 @@ public class SupabaseService {
         try {
             String url = supabaseUrl + "/rest/v1/bot_users?limit=1&select=*";
             HttpEntity<String> entity = new HttpEntity<>(createHeaders());
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+            ResponseEntity<String> response = timed("checkUserConnection",
+                    () -> restTemplate.exchange(url, HttpMethod.GET, entity, String.class));
             return response.getStatusCode().is2xxSuccessful() ? "✅ Connection OK" : "❌ Connection Failed";
         } catch (Exception e) {
             log.error("Supabase connection error", e);
@@ -56,45 +195,118 @@ public class SupabaseService {
 
     // --- Schedule Methods ---
 
+    // Свежие данные — из кэша; устаревшие отдаются сразу, а обновляются в фоне (stale-while-revalidate),
+    // поэтому при медленной или недоступной БД ответ пользователю не ждет Supabase
     public List<Schedule> getWeeklySchedule(LocalDate startOfWeek) {
+        List<Schedule> cached = scheduleCache.getRange(startOfWeek, 7);
+        if (cached != null) {
+            return cached;
+        }
+        List<Schedule> stale = scheduleCache.getStaleRange(startOfWeek, 7);
+        if (stale != null) {
+            refreshInBackground("week:" + startOfWeek, () -> fetchWeeklySchedule(startOfWeek));
+            return stale;
+        }
         try {
-            LocalDate endOfWeek = startOfWeek.plusDays(6);
-            String rawUrl = String.format("%s/rest/v1/schedule?date=gte.%s&date=lte.%s&order=date",
-                    supabaseUrl, startOfWeek.toString(), endOfWeek.toString());
-            URI uri = URI.create(rawUrl);
-
-            HttpEntity<String> entity = new HttpEntity<>(createHeaders());
-            ResponseEntity<Schedule[]> response = restTemplate.exchange(uri, HttpMethod.GET, entity, Schedule[].class);
-
-            return response.getBody() != null ? Arrays.asList(response.getBody()) : Collections.emptyList();
+            return fetchWeeklySchedule(startOfWeek);
         } catch (Exception e) {
-            log.error("Error getting weekly schedule", e);
+            logReadError("Error getting weekly schedule", e);
             return Collections.emptyList();
         }
     }
 
+    private List<Schedule> fetchWeeklySchedule(LocalDate startOfWeek) {
+        return weekFlight.execute(startOfWeek, () -> loadWeeklySchedule(startOfWeek));
+    }
+
+    private List<Schedule> loadWeeklySchedule(LocalDate startOfWeek) {
+        LocalDate endOfWeek = startOfWeek.plusDays(6);
+        String rawUrl = String.format("%s/rest/v1/schedule?date=gte.%s&date=lte.%s&order=date",
+                supabaseUrl, startOfWeek.toString(), endOfWeek.toString());
+        URI uri = URI.create(rawUrl);
+
+        HttpEntity<String> entity = new HttpEntity<>(createHeaders());
+        ResponseEntity<Schedule[]> response = timed("getWeeklySchedule", () -> hedged(SCHEDULE_ENDPOINT, "schedule.week",
+                () -> restTemplate.exchange(uri, HttpMethod.GET, entity, Schedule[].class)));
+
+        List<Schedule> schedules = response.getBody() != null ? Arrays.asList(response.getBody()) : Collections.emptyList();
+        scheduleCache.putRange(startOfWeek, 7, schedules);
+        return schedules;
+    }
+
     public Schedule getScheduleByDate(LocalDate date) {
+        ScheduleCache.Entry cached = scheduleCache.get(date);
+        if (cached != null) {
+            return cached.getSchedule();
+        }
+        ScheduleCache.Entry stale = scheduleCache.getStale(date);
+        if (stale != null) {
+            refreshInBackground("day:" + date, () -> fetchScheduleByDate(date));
+            return stale.getSchedule();
+        }
         try {
-            String url = supabaseUrl + "/rest/v1/schedule?date=eq." + date;
-            HttpEntity<String> entity = new HttpEntity<>(createHeaders());
-            ResponseEntity<Schedule[]> response = restTemplate.exchange(url, HttpMethod.GET, entity, Schedule[].class);
+            return fetchScheduleByDate(date);
+        } catch (Exception e) {
+            logReadError("Error getting schedule by date: " + date, e);
+            return null;
+        }
+    }
+
+    private Schedule fetchScheduleByDate(LocalDate date) {
+        return dayFlight.execute(date, () -> loadScheduleByDate(date));
+    }
+
+    private Schedule loadScheduleByDate(LocalDate date) {
+        String url = supabaseUrl + "/rest/v1/schedule?date=eq." + date;
+        HttpEntity<String> entity = new HttpEntity<>(createHeaders());
+        ResponseEntity<Schedule[]> response = timed("getScheduleByDate", () -> hedged(SCHEDULE_ENDPOINT, "schedule.day",
+                () -> restTemplate.exchange(url, HttpMethod.GET, entity, Schedule[].class)));
+
+        Schedule[] schedules = response.getBody();
+        Schedule schedule = (schedules != null && schedules.length > 0) ? schedules[0] : null;
+        scheduleCache.put(date, schedule);
+        return schedule;
+    }
 
-            Schedule[] schedules = response.getBody();
-            return (schedules != null && schedules.length > 0) ? schedules[0] : null;
+    // Расписание по id: сначала индекс кэша, затем точечный запрос по первичному ключу
+    public Schedule getScheduleById(Long id) {
+        Schedule cached = scheduleCache.getById(id);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            return idFlight.execute(id, () -> loadScheduleById(id));
         } catch (Exception e) {
-            log.error("Error getting schedule by date: {}", date, e);
+            logReadError("Error getting schedule by id: " + id, e);
             return null;
         }
     }
 
+    private Schedule loadScheduleById(Long id) {
+        String url = supabaseUrl + "/rest/v1/schedule?id=eq." + id;
+        HttpEntity<String> entity = new HttpEntity<>(createHeaders());
+        ResponseEntity<Schedule[]> response = timed("getScheduleById", () -> call(SCHEDULE_ENDPOINT,
+                () -> restTemplate.exchange(url, HttpMethod.GET, entity, Schedule[].class)));
+
+        Schedule[] schedules = response.getBody();
+        Schedule schedule = (schedules != null && schedules.length > 0) ? schedules[0] : null;
+        if (schedule != null) {
+            scheduleCache.put(schedule.getDate(), schedule);
+        }
+        return schedule;
+    }
+
     // Метод обновления расписания (для редактирования)
     public void updateSchedule(Schedule schedule) {
         try {
             String url = supabaseUrl + "/rest/v1/schedule?date=eq." + schedule.getDate();
             HttpEntity<Schedule> entity = new HttpEntity<>(schedule, createHeaders());
-            restTemplate.exchange(url, HttpMethod.PATCH, entity, String.class);
+            ResponseEntity<Schedule[]> response = timed("updateSchedule",
+                    () -> restTemplate.exchange(url, HttpMethod.PATCH, entity, Schedule[].class));
+            cacheWrittenSchedule(schedule.getDate(), response.getBody());
             log.info("Schedule updated for {}", schedule.getDate());
         } catch (Exception e) {
+            scheduleCache.invalidate(schedule.getDate());
             log.error("Error updating schedule", e);
         }
     }
@@ -118,19 +330,38 @@ public class SupabaseService {
         }
     }
 
+    // Один диапазонный GET по существующим дням и один пакетный POST недостающих вместо запросов на каждый день
     public void initializeDefaultSchedule() {
         LocalDate today = LocalDate.now();
         int daysToCover = 180;
 
-        for (int i = 0; i < daysToCover; i++) {
-            LocalDate date = today.plusDays(i);
-            try {
-                if (getScheduleByDate(date) == null) {
-                    createSchedule(createDefaultSchedule(date));
+        try {
+            LocalDate lastDay = today.plusDays(daysToCover - 1);
+            String rangeUrl = String.format("%s/rest/v1/schedule?date=gte.%s&date=lte.%s&order=date",
+                    supabaseUrl, today, lastDay);
+            ResponseEntity<Schedule[]> response = timed("initializeDefaultSchedule", () -> restTemplate.exchange(
+                    URI.create(rangeUrl), HttpMethod.GET, new HttpEntity<>(createHeaders()), Schedule[].class));
+
+            List<Schedule> existing = response.getBody() != null ? Arrays.asList(response.getBody()) : Collections.emptyList();
+            scheduleCache.putRange(today, daysToCover, existing);
+
+            Set<LocalDate> existingDates = existing.stream().map(Schedule::getDate).collect(Collectors.toSet());
+            List<Schedule> missing = new ArrayList<>();
+            for (int i = 0; i < daysToCover; i++) {
+                LocalDate date = today.plusDays(i);
+                if (!existingDates.contains(date)) {
+                    missing.add(createDefaultSchedule(date));
                 }
-            } catch (Exception e) {
-                log.error("Error initializing schedule for {}", date, e);
             }
+
+            if (missing.isEmpty()) {
+                log.info("Default schedule already present for {} days", daysToCover);
+                return;
+            }
+
+            createSchedules(missing);
+        } catch (Exception e) {
+            log.error("Error initializing default schedule", e);
         }
     }
 
@@ -159,14 +390,103 @@ public class SupabaseService {
         return schedule;
     }
 
-    private void createSchedule(Schedule schedule) {
+    // Пакетная вставка. columns выравнивает набор полей (NON_NULL опускает пустые время/класс),
+    // ignore-duplicates пропускает дни, созданные параллельно другим экземпляром
+    private void createSchedules(List<Schedule> schedules) {
+        String url = supabaseUrl + "/rest/v1/schedule?on_conflict=date"
+                + "&columns=date,is_active,morning_time,morning_class,evening_time,evening_class";
+        HttpHeaders headers = createHeaders();
+        headers.set("Prefer", "resolution=ignore-duplicates,return=representation");
+
+        ResponseEntity<Schedule[]> response = timed("createSchedules",
+                () -> restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(schedules, headers), Schedule[].class));
+
+        for (Schedule schedule : schedules) {
+            scheduleCache.invalidate(schedule.getDate());
+        }
+        Schedule[] created = response.getBody();
+        if (created != null) {
+            for (Schedule schedule : created) {
+                scheduleCache.put(schedule.getDate(), schedule);
+            }
+        }
+        log.info("Created {} default schedule days in one request", created != null ? created.length : 0);
+    }
+
+    // Write-through: Prefer return=representation возвращает записанную строку вместе с id
+    private void cacheWrittenSchedule(LocalDate date, Schedule[] written) {
+        if (written != null && written.length > 0) {
+            scheduleCache.put(date, written[0]);
+        } else {
+            scheduleCache.invalidate(date);
+        }
+    }
+
+    // Отчет о записях за диапазон дат одним запросом: расписание со встроенными записями и пользователями.
+    // Как и в fetchSubscriptionsForClass, поверх накладываются неотправленные записи журнала, снятые до запроса.
+    public AttendanceReport getAttendanceReport(LocalDate from, LocalDate to) {
         try {
-            String url = supabaseUrl + "/rest/v1/schedule";
-            HttpEntity<Schedule> entity = new HttpEntity<>(schedule, createHeaders());
-            restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
-            log.info("Created schedule for {}", schedule.getDate());
+            List<SubscriptionJournal.Entry> pending = subscriptionJournal.pendingLastOps();
+            String rawUrl = String.format("%s/rest/v1/schedule"
+                            + "?select=*,subscriptions(telegram_id,class_type,bot_users(telegram_id,first_name,last_name,username))"
+                            + "&subscriptions.order=id&date=gte.%s&date=lte.%s&order=date",
+                    supabaseUrl, from, to);
+            HttpEntity<String> entity = new HttpEntity<>(createHeaders());
+            ResponseEntity<AttendanceReport.ScheduleRow[]> response = timed("getAttendanceReport", () -> call(ATTENDANCE_ENDPOINT,
+                    () -> restTemplate.exchange(URI.create(rawUrl), HttpMethod.GET, entity, AttendanceReport.ScheduleRow[].class)));
+            AttendanceReport.ScheduleRow[] rows = response.getBody();
+            if (rows != null && !pending.isEmpty()) {
+                applyPending(rows, pending);
+            }
+            return AttendanceReport.fromRows(from, to, rows);
         } catch (Exception e) {
-            log.error("Failed to create schedule", e);
+            logReadError("Error getting attendance report " + from + " - " + to, e);
+            return null;
+        }
+    }
+
+    // Отмененные в журнале записи убираются из отчета, новые добавляются в конец; имена новых — одним запросом bot_users
+    private void applyPending(AttendanceReport.ScheduleRow[] rows, List<SubscriptionJournal.Entry> pending) {
+        Map<Long, List<SubscriptionJournal.Entry>> bySchedule = new HashMap<>();
+        for (SubscriptionJournal.Entry entry : pending) {
+            bySchedule.computeIfAbsent(entry.getScheduleId(), id -> new ArrayList<>()).add(entry);
+        }
+
+        Map<Long, List<AttendanceReport.SubscriptionRow>> added = new LinkedHashMap<>();
+        for (AttendanceReport.ScheduleRow row : rows) {
+            List<SubscriptionJournal.Entry> entries = row.getId() != null ? bySchedule.get(row.getId()) : null;
+            if (entries == null) continue;
+
+            Map<String, SubscriptionJournal.Entry> byUserAndClass = new HashMap<>();
+            for (SubscriptionJournal.Entry entry : entries) {
+                byUserAndClass.put(entry.getTelegramId() + ":" + entry.getClassType(), entry);
+            }
+            List<AttendanceReport.SubscriptionRow> subscriptions = row.getSubscriptions() != null
+                    ? new ArrayList<>(row.getSubscriptions()) : new ArrayList<>();
+            // Что осталось в byUserAndClass после прохода по ответу — записи, которых в Supabase еще нет
+            subscriptions.removeIf(subscription -> {
+                SubscriptionJournal.Entry entry = byUserAndClass.remove(subscription.getTelegramId() + ":" + subscription.getClassType());
+                return entry != null && entry.getOp() == SubscriptionJournal.Op.UNSUBSCRIBE;
+            });
+            for (SubscriptionJournal.Entry entry : entries) {
+                if (entry.getOp() != SubscriptionJournal.Op.SUBSCRIBE
+                        || !byUserAndClass.containsKey(entry.getTelegramId() + ":" + entry.getClassType())) continue;
+                AttendanceReport.SubscriptionRow subscription = new AttendanceReport.SubscriptionRow();
+                subscription.setTelegramId(entry.getTelegramId());
+                subscription.setClassType(entry.getClassType());
+                subscriptions.add(subscription);
+                added.computeIfAbsent(entry.getTelegramId(), id -> new ArrayList<>()).add(subscription);
+            }
+            row.setSubscriptions(subscriptions);
+        }
+
+        if (added.isEmpty()) return;
+        for (BotUser user : getUsersByIds(new ArrayList<>(added.keySet()))) {
+            List<AttendanceReport.SubscriptionRow> subscriptions = added.get(user.getTelegramId());
+            if (subscriptions == null) continue;
+            for (AttendanceReport.SubscriptionRow subscription : subscriptions) {
+                subscription.setUser(user);
+            }
         }
     }
 
@@ -176,11 +496,12 @@ public class SupabaseService {
         try {
             String url = supabaseUrl + "/rest/v1/bot_users?telegram_id=eq." + telegramId;
             HttpEntity<String> entity = new HttpEntity<>(createHeaders());
-            ResponseEntity<BotUser[]> response = restTemplate.exchange(url, HttpMethod.GET, entity, BotUser[].class);
+            ResponseEntity<BotUser[]> response = timed("getBotUserByTelegramId", () -> hedged(USERS_ENDPOINT, "bot_users.one",
+                    () -> restTemplate.exchange(url, HttpMethod.GET, entity, BotUser[].class)));
             BotUser[] users = response.getBody();
             return (users != null && users.length > 0) ? users[0] : null;
         } catch (Exception e) {
-            log.error("Error getting user {}", telegramId, e);
+            logReadError("Error getting user " + telegramId, e);
             return null;
         }
     }
@@ -191,71 +512,573 @@ public class SupabaseService {
             String idsStr = telegramIds.stream().map(String::valueOf).collect(Collectors.joining(","));
             String url = supabaseUrl + "/rest/v1/bot_users?telegram_id=in.(" + idsStr + ")";
             HttpEntity<String> entity = new HttpEntity<>(createHeaders());
-            ResponseEntity<BotUser[]> response = restTemplate.exchange(url, HttpMethod.GET, entity, BotUser[].class);
+            ResponseEntity<BotUser[]> response = timed("getUsersByIds", () -> hedged(USERS_ENDPOINT, "bot_users.in",
+                    () -> restTemplate.exchange(url, HttpMethod.GET, entity, BotUser[].class)));
             return response.getBody() != null ? Arrays.asList(response.getBody()) : Collections.emptyList();
         } catch (Exception e) {
-            log.error("Error getting users by ids", e);
+            logReadError("Error getting users by ids", e);
             return Collections.emptyList();
         }
     }
 
+    // Страница telegram_id всех пользователей (для рассылок). Ошибка не подменяется пустой страницей:
+    // для рассылки пустая страница означает конец списка получателей
+    public List<Long> getBotUserIdsPage(int offset, int limit) {
+        String url = supabaseUrl + "/rest/v1/bot_users?select=telegram_id&order=telegram_id";
+        List<Long> ids = new ArrayList<>(limit);
+        readRange(url, BotUser.class, offset, limit, user -> ids.add(user.getTelegramId()));
+        return ids;
+    }
+
+    // Запись профиля отложенная: неизменившиеся профили отбрасываются сразу,
+    // изменившиеся уходят пакетным upsert в flushBotUsers
     public void saveOrUpdateBotUser(BotUser botUser) {
+        if (!botUserUpsertBuffer.offer(botUser)) {
+            log.debug("User {} unchanged, skipping write", botUser.getTelegramId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bot-users.upsert.flush-interval-ms:2000}")
+    @PreDestroy
+    public void flushBotUsers() {
+        List<BotUser> batch;
+        while (!(batch = botUserUpsertBuffer.drain(upsertBatchSize)).isEmpty()) {
+            try {
+                upsertOrSplit(batch);
+            } catch (Exception e) {
+                // 5xx, сеть, авторизация, лимиты — пакет вернется и уйдет при следующем сбросе
+                log.error("Error upserting {} users, will retry", batch.size(), e);
+                botUserUpsertBuffer.requeue(batch);
+                return;
+            }
+        }
+    }
+
+    // 400/422 — в пакете есть профиль, который Supabase не примет никогда: пакет делится пополам,
+    // пока такой профиль не останется один; он отбрасывается, чтобы не блокировать остальные записи
+    private void upsertOrSplit(List<BotUser> users) {
         try {
-            String url = supabaseUrl + "/rest/v1/bot_users";
-            BotUser existing = getBotUserByTelegramId(botUser.getTelegramId());
-            ObjectMapper mapper = new ObjectMapper();
-            Map<String, Object> map = new HashMap<>();
-            map.put("telegram_id", botUser.getTelegramId());
-            map.put("first_name", botUser.getFirstName());
-            map.put("last_name", botUser.getLastName());
-            map.put("username", botUser.getUsername());
-            String json = mapper.writeValueAsString(map);
-
-            if (existing != null) {
-                String patchUrl = url + "?telegram_id=eq." + botUser.getTelegramId();
-                restTemplate.exchange(patchUrl, HttpMethod.PATCH, new HttpEntity<>(json, createHeaders()), String.class);
-            } else {
-                restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(json, createHeaders()), String.class);
+            upsertBotUsers(users);
+            botUserUpsertBuffer.markWritten(users);
+        } catch (HttpClientErrorException e) {
+            if (!isDataError(e)) throw e;
+            if (users.size() == 1) {
+                log.error("Dropping user {} rejected by Supabase ({}): {}", users.get(0).getTelegramId(),
+                        e.getRawStatusCode(), e.getResponseBodyAsString());
+                meterRegistry.counter("bot_users.upsert.rejected").increment();
+                return;
             }
-        } catch (Exception e) {
-            log.error("Error saving user", e);
+            int middle = users.size() / 2;
+            upsertOrSplit(users.subList(0, middle));
+            upsertOrSplit(users.subList(middle, users.size()));
         }
     }
 
+    private void upsertBotUsers(List<BotUser> users) {
+        List<Map<String, Object>> rows = new ArrayList<>(users.size());
+        for (BotUser user : users) {
+            // Явные null-значения: все объекты пакета должны иметь одинаковый набор ключей
+            Map<String, Object> row = new HashMap<>();
+            row.put("telegram_id", user.getTelegramId());
+            row.put("first_name", user.getFirstName());
+            row.put("last_name", user.getLastName());
+            row.put("username", user.getUsername());
+            rows.add(row);
+        }
+
+        HttpHeaders headers = createHeaders();
+        headers.set("Prefer", "resolution=merge-duplicates,return=minimal");
+        String url = supabaseUrl + "/rest/v1/bot_users?on_conflict=telegram_id";
+        timed("upsertBotUsers", () -> restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(rows, headers), String.class));
+        log.info("Upserted {} users", users.size());
+    }
+
     // --- Subscription Methods ---
 
-    public void subscribeToClass(Long telegramId, Long scheduleId, String classType, LocalDate classDate) {
+    // Запись сначала попадает в локальный журнал (ответ пользователю не ждет Supabase),
+    // в БД ее отправляет replaySubscriptionJournal. Если журнал недоступен — прямой запрос.
+    public boolean subscribeToClass(Long telegramId, Long scheduleId, String classType, LocalDate classDate) {
+        if (subscriptionJournal.append(SubscriptionJournal.Op.SUBSCRIBE, telegramId, scheduleId, classType, classDate)) {
+            log.info("User {} subscribed to {} (journaled)", telegramId, scheduleId);
+            return true;
+        }
         try {
-            Subscription sub = new Subscription(telegramId, scheduleId, classType, classDate);
-            HttpHeaders headers = createHeaders();
-            headers.set("Prefer", "resolution=ignore-duplicates");
-            HttpEntity<Subscription> entity = new HttpEntity<>(sub, headers);
-            restTemplate.exchange(supabaseUrl + "/rest/v1/subscriptions", HttpMethod.POST, entity, String.class);
+            flushBotUsers();
+            insertSubscriptions(Collections.singletonList(new Subscription(telegramId, scheduleId, classType, classDate)));
             log.info("User {} subscribed to {}", telegramId, scheduleId);
+            return true;
         } catch (Exception e) {
             log.error("Error subscribing", e);
+            return false;
         }
     }
 
-    public void unsubscribeFromClass(Long telegramId, Long scheduleId, String classType) {
+    public boolean unsubscribeFromClass(Long telegramId, Long scheduleId, String classType) {
+        if (subscriptionJournal.append(SubscriptionJournal.Op.UNSUBSCRIBE, telegramId, scheduleId, classType, null)) {
+            return true;
+        }
         try {
             String query = String.format("telegram_id=eq.%d&schedule_id=eq.%d&class_type=eq.%s", telegramId, scheduleId, classType);
             String url = supabaseUrl + "/rest/v1/subscriptions?" + query;
-            restTemplate.exchange(url, HttpMethod.DELETE, new HttpEntity<>(createHeaders()), String.class);
+            timed("unsubscribeFromClass",
+                    () -> restTemplate.exchange(url, HttpMethod.DELETE, new HttpEntity<>(createHeaders()), String.class));
+            return true;
         } catch (Exception e) {
             log.error("Error unsubscribing", e);
+            return false;
+        }
+    }
+
+    // Отправка журнала: для каждой пары (пользователь, занятие) в пакете остается только последняя операция,
+    // так что многократные "записаться/отменить" схлопываются. Итог уходит не более чем двумя запросами:
+    // одна пакетная вставка и одно пакетное удаление; после схлопывания ключи не пересекаются, и порядок между ними не важен.
+    // Повтор безопасен: вставка игнорирует дубликаты по (telegram_id, schedule_id, class_type), удаление идемпотентно.
+    @Scheduled(fixedDelayString = "${journal.replay-interval-ms:1000}")
+    @PreDestroy
+    public void replaySubscriptionJournal() {
+        if (subscriptionJournal.pendingCount() == 0) return;
+        // Сначала профили из буфера: запись ссылается на bot_users, и новый пользователь иначе получит 409 по внешнему ключу
+        flushBotUsers();
+
+        List<SubscriptionJournal.Entry> batch;
+        while (!(batch = subscriptionJournal.peek(journalBatchSize)).isEmpty()) {
+            Collection<SubscriptionJournal.Entry> net = lastOpPerKey(batch);
+            List<SubscriptionJournal.Entry> subscribes = new ArrayList<>();
+            List<SubscriptionJournal.Entry> unsubscribes = new ArrayList<>();
+            for (SubscriptionJournal.Entry entry : net) {
+                (entry.getOp() == SubscriptionJournal.Op.SUBSCRIBE ? subscribes : unsubscribes).add(entry);
+            }
+            try {
+                if (!subscribes.isEmpty()) replayRun(subscribes);
+                if (!unsubscribes.isEmpty()) replayRun(unsubscribes);
+            } catch (HttpClientErrorException e) {
+                if (!isDataError(e)) {
+                    // Авторизация, лимиты, конфликт внешнего ключа — временно: пользователю уже ответили, запись не теряем
+                    log.warn("Journal batch of {} rejected ({}), will retry", net.size(), e.getRawStatusCode());
+                    return;
+                }
+                // Ошибка в данных: отправляем по одной, чтобы не застрять на этом пакете из-за одной записи
+                log.warn("Journal batch of {} rejected ({}), replaying entries one by one", net.size(), e.getRawStatusCode());
+                try {
+                    replayOneByOne(net);
+                } catch (Exception retry) {
+                    log.error("Error replaying {} journal entries one by one, will retry", net.size(), retry);
+                    return;
+                }
+            } catch (Exception e) {
+                log.error("Error replaying {} journal entries, will retry", net.size(), e);
+                return;
+            }
+            subscriptionJournal.commit(batch.size());
+            if (batch.size() > net.size()) {
+                meterRegistry.counter("subscriptions.journal.coalesced").increment(batch.size() - net.size());
+            }
+        }
+    }
+
+    // Последняя операция по каждой паре (telegram_id, schedule_id, class_type) в порядке первого появления
+    private static Collection<SubscriptionJournal.Entry> lastOpPerKey(List<SubscriptionJournal.Entry> entries) {
+        Map<String, SubscriptionJournal.Entry> last = new LinkedHashMap<>();
+        for (SubscriptionJournal.Entry entry : entries) {
+            last.put(entry.getTelegramId() + ":" + entry.getScheduleId() + ":" + entry.getClassType(), entry);
         }
+        return last.values();
+    }
+
+    private void replayRun(List<SubscriptionJournal.Entry> run) {
+        if (run.get(0).getOp() == SubscriptionJournal.Op.SUBSCRIBE) {
+            List<Subscription> subscriptions = new ArrayList<>(run.size());
+            for (SubscriptionJournal.Entry entry : run) {
+                Subscription subscription = new Subscription(entry.getTelegramId(), entry.getScheduleId(),
+                        entry.getClassType(), entry.getClassDate());
+                subscription.setSubscribedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.getCreatedAt()), ZoneId.systemDefault()));
+                subscriptions.add(subscription);
+            }
+            insertSubscriptions(subscriptions);
+        } else {
+            // Один DELETE на занятие с telegram_id=in.(...): URL растет только на id, а не на весь фильтр по каждой записи
+            Map<String, List<Long>> idsByClass = new LinkedHashMap<>();
+            for (SubscriptionJournal.Entry entry : run) {
+                idsByClass.computeIfAbsent(entry.getScheduleId() + ":" + entry.getClassType(), key -> new ArrayList<>())
+                        .add(entry.getTelegramId());
+            }
+            for (Map.Entry<String, List<Long>> group : idsByClass.entrySet()) {
+                int colon = group.getKey().indexOf(':');
+                List<Long> ids = group.getValue();
+                for (int from = 0; from < ids.size(); from += DELETE_IDS_PER_REQUEST) {
+                    String filter = String.format("schedule_id=eq.%s&class_type=eq.%s&telegram_id=in.(%s)",
+                            group.getKey().substring(0, colon), group.getKey().substring(colon + 1),
+                            ids.subList(from, Math.min(from + DELETE_IDS_PER_REQUEST, ids.size())).stream()
+                                    .map(String::valueOf).collect(Collectors.joining(",")));
+                    timed("deleteSubscriptions", () -> restTemplate.exchange(URI.create(supabaseUrl + "/rest/v1/subscriptions?" + filter),
+                            HttpMethod.DELETE, new HttpEntity<>(createHeaders()), String.class));
+                }
+            }
+        }
+    }
+
+    // Повтор по одной; в dead letter уходят только записи, отвергнутые как неверные данные, остальные ошибки пробрасываются
+    private void replayOneByOne(Collection<SubscriptionJournal.Entry> run) {
+        for (SubscriptionJournal.Entry entry : run) {
+            try {
+                replayRun(Collections.singletonList(entry));
+            } catch (HttpClientErrorException e) {
+                if (!isDataError(e)) throw e;
+                log.error("Dead-lettering journal entry {} {}/{}/{}: {}", entry.getOp(), entry.getTelegramId(),
+                        entry.getScheduleId(), entry.getClassType(), e.getResponseBodyAsString());
+                subscriptionJournal.deadLetter(entry, e.getRawStatusCode() + " " + e.getResponseBodyAsString());
+                meterRegistry.counter("subscriptions.journal.dead_letters").increment();
+            }
+        }
+    }
+
+    // 400/422 — запись не примут никогда; 401/403/408/409/429 и прочие 4xx повторяем
+    private static boolean isDataError(HttpClientErrorException e) {
+        int status = e.getRawStatusCode();
+        return status == 400 || status == 422;
+    }
+
+    private void insertSubscriptions(List<Subscription> subscriptions) {
+        String url = supabaseUrl + "/rest/v1/subscriptions?on_conflict=telegram_id,schedule_id,class_type"
+                + "&columns=telegram_id,schedule_id,class_type,class_date,subscribed_at";
+        HttpHeaders headers = createHeaders();
+        headers.set("Prefer", "resolution=ignore-duplicates,return=minimal");
+        timed("insertSubscriptions",
+                () -> restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(subscriptions, headers), String.class));
+    }
+
+    // Страница telegram_id записавшихся на день расписания (оба занятия); ошибка пробрасывается, как и в getBotUserIdsPage
+    public List<Long> getSubscriberIdsPage(Long scheduleId, int offset, int limit) {
+        String url = String.format("%s/rest/v1/subscriptions?select=telegram_id&schedule_id=eq.%d&order=telegram_id",
+                supabaseUrl, scheduleId);
+        List<Long> ids = new ArrayList<>(limit);
+        readRange(url, Subscription.class, offset, limit, subscription -> ids.add(subscription.getTelegramId()));
+        return ids;
     }
 
     public List<Subscription> getSubscriptionsForClass(Long scheduleId, String classType) {
         try {
-            String query = String.format("schedule_id=eq.%d&class_type=eq.%s", scheduleId, classType);
-            String url = supabaseUrl + "/rest/v1/subscriptions?" + query;
-            ResponseEntity<Subscription[]> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(createHeaders()), Subscription[].class);
-            return response.getBody() != null ? Arrays.asList(response.getBody()) : Collections.emptyList();
+            return fetchSubscriptionsForClass(scheduleId, classType);
         } catch (Exception e) {
-            log.error("Error getting subscriptions", e);
+            logReadError("Error getting subscriptions", e);
             return Collections.emptyList();
         }
     }
+
+    // Без подмены ошибки пустым списком: счетчикам мест нужно отличать "записей нет" от "Supabase недоступен".
+    // Поверх ответа накладываются еще не отправленные записи журнала, чтобы только что записавшийся сразу был в списке.
+    // Индекс журнала читается до запроса: запись, отправленная в Supabase во время запроса, не потеряется ни там, ни там.
+    List<Subscription> fetchSubscriptionsForClass(Long scheduleId, String classType) {
+        Map<Long, SubscriptionJournal.Entry> pending = subscriptionJournal.pendingFor(scheduleId, classType);
+        String query = String.format("schedule_id=eq.%d&class_type=eq.%s", scheduleId, classType);
+        String url = supabaseUrl + "/rest/v1/subscriptions?" + query;
+        ResponseEntity<Subscription[]> response = timed("getSubscriptionsForClass", () -> hedged(SUBSCRIPTIONS_ENDPOINT,
+                "subscriptions.class", () -> restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(createHeaders()), Subscription[].class)));
+        List<Subscription> stored = response.getBody() != null ? Arrays.asList(response.getBody()) : Collections.emptyList();
+        return pending.isEmpty() ? stored : withPending(stored, pending, scheduleId, classType);
+    }
+
+    private static List<Subscription> withPending(List<Subscription> stored, Map<Long, SubscriptionJournal.Entry> pending,
+                                                  long scheduleId, String classType) {
+        Map<Long, Subscription> byUser = new LinkedHashMap<>();
+        for (Subscription subscription : stored) {
+            byUser.put(subscription.getTelegramId(), subscription);
+        }
+        for (SubscriptionJournal.Entry entry : pending.values()) {
+            if (entry.getOp() == SubscriptionJournal.Op.SUBSCRIBE) {
+                byUser.putIfAbsent(entry.getTelegramId(),
+                        new Subscription(entry.getTelegramId(), scheduleId, classType, entry.getClassDate()));
+            } else {
+                byUser.remove(entry.getTelegramId());
+            }
+        }
+        return new ArrayList<>(byUser.values());
+    }
+
+    // --- Потоковое чтение ---
+    // Строки разбираются по одной из потока ответа (JsonParser + общий ObjectReader) и читаются страницами
+    // через заголовок Range, поэтому память не зависит от размера таблицы. В url обязателен order, иначе страницы нестабильны.
+    // Ошибка чтения страницы пробрасывается вызывающему: оборванный результат не должен выглядеть полным.
+
+    public <T> long forEachRow(String url, Class<T> type, Consumer<? super T> consumer) {
+        long total = 0;
+        while (true) {
+            int read = readRange(url, type, (int) total, streamPageSize, consumer);
+            total += read;
+            if (read < streamPageSize) break;
+        }
+        return total;
+    }
+
+    // Ленивый поток: следующая страница запрашивается, только когда потребитель дочитал текущую
+    public <T> Stream<T> streamRows(String url, Class<T> type) {
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final Deque<T> page = new ArrayDeque<>();
+            private int offset;
+            private boolean last;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (page.isEmpty() && !last) {
+                    int read = readRange(url, type, offset, streamPageSize, page::add);
+                    offset += read;
+                    last = read < streamPageSize;
+                }
+                T next = page.poll();
+                if (next == null) return false;
+                action.accept(next);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    private <T> int readRange(String url, Class<T> type, int offset, int limit, Consumer<? super T> consumer) {
+        HttpHeaders headers = createHeaders();
+        headers.set("Range-Unit", "items");
+        headers.set("Range", offset + "-" + (offset + limit - 1));
+        ObjectReader reader = readers.computeIfAbsent(type, objectMapper::readerFor);
+
+        try {
+            Integer read = timed("readRange", () -> restTemplate.execute(URI.create(url), HttpMethod.GET,
+                    request -> request.getHeaders().putAll(headers),
+                    response -> readArray(response.getBody(), reader, consumer)));
+            return read != null ? read : 0;
+        } catch (HttpClientErrorException e) {
+            // 416: offset за концом таблицы — строк больше нет
+            if (e.getRawStatusCode() == 416) return 0;
+            throw e;
+        }
+    }
+
+    private <T> int readArray(InputStream body, ObjectReader reader, Consumer<? super T> consumer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected JSON array in PostgREST response");
+            }
+            int count = 0;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                T row = reader.readValue(parser);
+                consumer.accept(row);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    // --- Метрики ---
+
+    // Время одного обращения к Supabase с исходом: success, client_error, server_error, circuit_open, io_error, error
+    private <T> T timed(String method, Supplier<T> request) {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return request.get();
+        } catch (HttpStatusCodeException e) {
+            outcome = e.getRawStatusCode() >= 500 ? "server_error" : "client_error";
+            throw e;
+        } catch (CircuitOpenException e) {
+            outcome = "circuit_open";
+            throw e;
+        } catch (ResourceAccessException e) {
+            outcome = "io_error";
+            throw e;
+        } catch (RuntimeException e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            meterRegistry.timer("supabase.call", "method", method, "outcome", outcome)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // --- Автоматы защиты и фоновые обновления ---
+
+    public String getBreakerStates() {
+        if (breakers.isEmpty()) return "No Supabase calls yet";
+        return breakers.values().stream().map(CircuitBreaker::toString).sorted().collect(Collectors.joining(", "));
+    }
+
+    // Запрос через автомат защиты эндпоинта. Сбоем считаются только таймауты, сетевые ошибки, 5xx и 429:
+    // ответ 4xx означает, что БД доступна.
+    private <T> T call(String endpoint, Supplier<T> request) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpoint,
+                name -> new CircuitBreaker(name, breakerFailureThreshold, breakerOpenMs));
+        if (!breaker.tryAcquire()) {
+            throw new CircuitOpenException(endpoint);
+        }
+        try {
+            T result = request.get();
+            breaker.onSuccess();
+            return result;
+        } catch (HttpStatusCodeException e) {
+            int status = e.getRawStatusCode();
+            if (status >= 500 || status == 429) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+            throw e;
+        } catch (RestClientException e) {
+            breaker.onFailure();
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onSuccess();
+            throw e;
+        }
+    }
+
+    // --- Хеджирование и адаптивные таймауты ---
+
+    public String getLatencyStats() {
+        StringBuilder sb = new StringBuilder();
+        latencies.forEach((operation, histogram) -> sb.append(String.format("%s: n=%d p50=%dms p95=%dms p99=%dms%n",
+                operation, histogram.count(), histogram.percentileMillis(0.5),
+                histogram.percentileMillis(0.95), histogram.percentileMillis(0.99))));
+        sb.append(String.format("hedges: fired=%d, won=%d%n", hedgesFired.get(), hedgeWins.get()));
+        sb.append(String.format("single-flight: week=%d/%d, day=%d/%d, id=%d/%d (coalesced/executed)",
+                weekFlight.coalescedCount(), weekFlight.executedCount(),
+                dayFlight.coalescedCount(), dayFlight.executedCount(),
+                idFlight.coalescedCount(), idFlight.executedCount()));
+        return sb.toString();
+    }
+
+    // supabase.singleflight{result=executed} — запросы, ушедшие в Supabase; {result=coalesced} — ответы, полученные от чужого запроса
+    private void registerFlight(String method, SingleFlight<?, ?> flight) {
+        FunctionCounter.builder("supabase.singleflight", flight, SingleFlight::executedCount)
+                .tags("method", method, "result", "executed")
+                .register(meterRegistry);
+        FunctionCounter.builder("supabase.singleflight", flight, SingleFlight::coalescedCount)
+                .tags("method", method, "result", "coalesced")
+                .register(meterRegistry);
+    }
+
+    // Идемпотентное чтение: если ответа нет дольше p95 операции, отправляется дубликат, побеждает первый ответ.
+    // Ожидание ограничено таймаутом по p99 из скользящей гистограммы, а не постоянными 10 с; тот же таймаут получает
+    // сам HTTP-запрос каждой попытки, чтобы проигравшая или просроченная попытка не держала соединение и поток.
+    private <T> T hedged(String endpoint, String operation, Supplier<T> request) {
+        LatencyHistogram histogram = latencies.computeIfAbsent(operation,
+                name -> new LatencyHistogram(TimeUnit.SECONDS.toMillis(latencyWindowSeconds)));
+
+        boolean enoughSamples = histogram.count() >= latencyMinSamples;
+        long timeoutMs = enoughSamples
+                ? Math.max(timeoutMinMs, Math.min(timeoutMaxMs, (long) (histogram.percentileMillis(0.99) * timeoutMultiplier)))
+                : timeoutMaxMs;
+        long hedgeDelayMs = Math.max(hedgeMinDelayMs, histogram.percentileMillis(hedgePercentile));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        if (!startAttempt(endpoint, histogram, request, deadline, result, pending, false)) {
+            // Пул попыток переполнен: отказываем сразу, а не выполняем без ограничения по времени в текущем потоке
+            meterRegistry.counter("supabase.requests.rejected", "operation", operation).increment();
+            throw new ResourceAccessException("Supabase request pool is saturated, " + operation + " rejected");
+        }
+
+        try {
+            if (hedgeEnabled && enoughSamples && hedgeDelayMs < timeoutMs) {
+                try {
+                    return result.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException slow) {
+                    startHedge(endpoint, histogram, request, deadline, result, pending);
+                }
+                return result.get(timeoutMs - hedgeDelayMs, TimeUnit.MILLISECONDS);
+            }
+            return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ResourceAccessException("Supabase " + operation + " exceeded adaptive timeout of " + timeoutMs + " ms");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while waiting for Supabase " + operation);
+        }
+    }
+
+    // Дубликат не отправляется при открытом автомате и ограничен по числу одновременных, чтобы не усиливать перегрузку
+    private <T> void startHedge(String endpoint, LatencyHistogram histogram, Supplier<T> request, long deadline,
+                                CompletableFuture<T> result, AtomicInteger pending) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (result.isDone() || (breaker != null && breaker.getState() != CircuitBreaker.State.CLOSED)) {
+            return;
+        }
+        if (hedgesInFlight.incrementAndGet() > hedgeMaxInFlight) {
+            hedgesInFlight.decrementAndGet();
+            return;
+        }
+        pending.incrementAndGet();
+        if (startAttempt(endpoint, histogram, request, deadline, result, pending, true)) {
+            hedgesFired.incrementAndGet();
+        } else {
+            pending.decrementAndGet();
+            hedgesInFlight.decrementAndGet();
+        }
+    }
+
+    // deadline (System.nanoTime) общий для всех попыток: HTTP-запрос получает остаток времени до него,
+    // а попытка, дождавшаяся потока уже после дедлайна, не отправляется вовсе
+    private <T> boolean startAttempt(String endpoint, LatencyHistogram histogram, Supplier<T> request, long deadline,
+                                     CompletableFuture<T> result, AtomicInteger pending, boolean hedge) {
+        try {
+            requestExecutor.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - start);
+                    if (remainingMs <= 0 || result.isDone()) {
+                        throw new ResourceAccessException("Supabase request expired before it was sent");
+                    }
+                    T value = SupabaseRequestTimeout.with(remainingMs, () -> call(endpoint, request));
+                    histogram.record(System.nanoTime() - start);
+                    if (result.complete(value) && hedge) {
+                        hedgeWins.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    // Ошибка результата — только если не осталось других попыток
+                    if (pending.decrementAndGet() == 0) {
+                        result.completeExceptionally(e);
+                    }
+                } finally {
+                    if (hedge) {
+                        hedgesInFlight.decrementAndGet();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    // Одно обновление на ключ: пока оно идет, остальные читатели получают устаревшие данные
+    private void refreshInBackground(String key, Runnable refresh) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            supabaseExecutor.execute(() -> {
+                try {
+                    refresh.run();
+                } catch (Exception e) {
+                    logReadError("Background refresh of " + key + " failed, serving stale data", e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    // Открытый автомат — штатная ситуация при сбое БД, без трассировки стека на каждый запрос
+    private void logReadError(String message, Exception e) {
+        if (e instanceof CircuitOpenException) {
+            log.warn("{}: {}", message, e.getMessage());
+        } else {
+            log.error(message, e);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,341 @@
+package com.yogabot.service;
+
+import com.yogabot.controller.BotController;
+import com.yogabot.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Единая точка исходящих вызовов Telegram: общий и поканальный лимиты (ведра токенов),
+// соблюдение retry_after из ответа 429 и повторы с экспоненциальной задержкой и джиттером.
+// Ответы пользователям приоритетнее рассылок: рассылка ограничена своей долей общего лимита
+// и берет токен общего ведра, только если он свободен, не вставая в очередь перед ответами.
+// Сообщения в один чат уходят в порядке вызова send.
+@Service
+public class TelegramSendGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(TelegramSendGateway.class);
+
+    public enum Priority { INTERACTIVE, BULK }
+
+    @Autowired
+    private BotController botController;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${telegram.send.global-rate:30}")
+    private double globalRate;
+
+    @Value("${telegram.send.per-chat-rate:1}")
+    private double perChatRate;
+
+    @Value("${telegram.send.per-chat-burst:3}")
+    private double perChatBurst;
+
+    // Доля общего лимита, доступная рассылкам; остальное всегда остается ответам
+    @Value("${telegram.send.bulk-share:0.8}")
+    private double bulkShare;
+
+    // Сколько sendAndWait ждет доставки, включая ожидание в ведрах и повторы
+    @Value("${telegram.send.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+
+    @Value("${telegram.send.workers:8}")
+    private int workers;
+
+    @Value("${telegram.send.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${telegram.send.base-backoff-ms:500}")
+    private long baseBackoffMs;
+
+    @Value("${telegram.send.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    // Ответ 429 ограничивает только свой чат; общая пауза — при 429 без чата или от нескольких чатов за секунду
+    @Value("${telegram.send.global-flood-threshold:3}")
+    private int globalFloodThreshold;
+
+    // Методы, которые безопасно повторять после сетевой ошибки без ответа: запрос мог дойти до Telegram,
+    // и повтор sendMessage продублировал бы сообщение. Остальные методы при такой ошибке не повторяются.
+    @Value("${telegram.send.idempotent-methods:answerCallbackQuery,editMessageText,editMessageReplyMarkup,deleteMessage,getMe}")
+    private String idempotentMethodsConfig;
+
+    private Set<String> idempotentMethods;
+
+    // Окно подсчета 429 для распознавания общего флуд-лимита
+    private final AtomicLong floodWindowStart = new AtomicLong();
+    private final AtomicInteger floodWindowCount = new AtomicInteger();
+
+    private TokenBucket globalBucket;
+    private TokenBucket bulkBucket;
+    private final Map<String, TokenBucket> chatBuckets = new ConcurrentHashMap<>();
+    // Последнее еще не завершенное сообщение в чат: следующее стартует после него
+    private final Map<String, CompletableFuture<?>> chatTails = new ConcurrentHashMap<>();
+
+    private ExecutorService senders;
+    private ScheduledExecutorService scheduler;
+
+    private Counter sentCounter;
+    private Counter failedCounter;
+    private Counter retryCounter;
+    private Timer throttleTimer;
+    private Timer latencyTimer;
+
+    @PostConstruct
+    public void init() {
+        globalBucket = new TokenBucket(globalRate, globalRate);
+        idempotentMethods = Stream.of(idempotentMethodsConfig.split(","))
+                .map(String::trim)
+                .filter(method -> !method.isEmpty())
+                .map(method -> method.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        double bulkRate = Math.max(1, globalRate * bulkShare);
+        bulkBucket = new TokenBucket(bulkRate, bulkRate);
+
+        AtomicInteger counter = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "telegram-send-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "telegram-send-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        sentCounter = meterRegistry.counter("telegram.send.sent");
+        failedCounter = meterRegistry.counter("telegram.send.failed");
+        retryCounter = meterRegistry.counter("telegram.send.retries");
+        throttleTimer = meterRegistry.timer("telegram.send.throttle");
+        latencyTimer = meterRegistry.timer("telegram.send.latency");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        senders.shutdown();
+    }
+
+    // Ответ пользователю или сообщение в канал
+    public <T extends Serializable> CompletableFuture<T> send(BotApiMethod<T> method) {
+        return send(method, Priority.INTERACTIVE);
+    }
+
+    // Массовая рассылка: уступает ответам пользователям
+    public <T extends Serializable> CompletableFuture<T> sendBulk(BotApiMethod<T> method) {
+        return send(method, Priority.BULK);
+    }
+
+    private <T extends Serializable> CompletableFuture<T> send(BotApiMethod<T> method, Priority priority) {
+        String chatId = method instanceof SendMessage ? ((SendMessage) method).getChatId() : null;
+        SendRequest<T> request = new SendRequest<>(method, chatId, priority);
+        if (chatId == null) {
+            acquireAndSend(request);
+            return request.future;
+        }
+
+        CompletableFuture<?> previous = chatTails.put(chatId, request.future);
+        request.future.whenComplete((result, error) -> chatTails.remove(chatId, request.future));
+        if (previous == null || previous.isDone()) {
+            acquireAndSend(request);
+        } else {
+            previous.whenComplete((result, error) -> acquireAndSend(request));
+        }
+        return request.future;
+    }
+
+    // Синхронный вариант для вызовов, которым нужен результат или ошибка здесь и сейчас
+    public <T extends Serializable> T sendAndWait(BotApiMethod<T> method) throws TelegramApiException {
+        try {
+            return send(method).orTimeout(waitTimeoutMs, TimeUnit.MILLISECONDS).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TelegramApiException) {
+                throw (TelegramApiException) e.getCause();
+            }
+            throw new TelegramApiException(e.getCause());
+        }
+    }
+
+    // Пустые (полные) поканальные ведра больше не ограничивают отправку и только занимают память
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleBuckets() {
+        chatBuckets.values().removeIf(TokenBucket::isFull);
+    }
+
+    private <T extends Serializable> void acquireAndSend(SendRequest<T> request) {
+        // Рассылка сначала ждет свою долю лимита, а токен общего ведра берет уже в acquireGlobalForBulk
+        long wait = request.priority == Priority.BULK ? bulkBucket.reserve() : globalBucket.reserve();
+        if (request.chatId != null) {
+            TokenBucket chatBucket = chatBuckets.computeIfAbsent(request.chatId, id -> new TokenBucket(perChatRate, perChatBurst));
+            wait = Math.max(wait, chatBucket.reserve());
+        }
+
+        Runnable next = request.priority == Priority.BULK ? () -> acquireGlobalForBulk(request) : () -> execute(request);
+        if (wait > 0) {
+            throttleTimer.record(wait, TimeUnit.NANOSECONDS);
+            schedule(request, next, wait);
+        } else {
+            next.run();
+        }
+    }
+
+    // Без резервирования в долг: пока ответы пользователям выбирают общий лимит, рассылка ждет
+    private <T extends Serializable> void acquireGlobalForBulk(SendRequest<T> request) {
+        if (globalBucket.tryAcquire()) {
+            execute(request);
+        } else {
+            schedule(request, () -> acquireGlobalForBulk(request), (long) (1_000_000_000d / globalRate));
+        }
+    }
+
+    // После остановки пулов запрос завершается ошибкой, а не зависает вместе с ожидающими его
+    private <T extends Serializable> void execute(SendRequest<T> request) {
+        try {
+            senders.execute(() -> doSend(request));
+        } catch (RejectedExecutionException e) {
+            fail(request, e);
+        }
+    }
+
+    private <T extends Serializable> void schedule(SendRequest<T> request, Runnable task, long delayNanos) {
+        try {
+            scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            fail(request, e);
+        }
+    }
+
+    private <T extends Serializable> void doSend(SendRequest<T> request) {
+        request.attempt++;
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = botController.execute(request.method);
+            outcome = "success";
+            sentCounter.increment();
+            latencyTimer.record(System.nanoTime() - request.createdAt, TimeUnit.NANOSECONDS);
+            request.future.complete(result);
+        } catch (TelegramApiRequestException e) {
+            Integer code = e.getErrorCode();
+            outcome = code == null ? "error" : code == 429 ? "rate_limited" : code >= 500 ? "server_error" : "client_error";
+            if (code != null && code == 429) {
+                long retryAfterNanos = TimeUnit.SECONDS.toNanos(retryAfterSeconds(e));
+                if (request.chatId != null) {
+                    chatBuckets.computeIfAbsent(request.chatId, id -> new TokenBucket(perChatRate, perChatBurst))
+                            .pause(retryAfterNanos);
+                }
+                if (request.chatId == null || isGlobalFlood()) {
+                    globalBucket.pause(retryAfterNanos);
+                }
+                retryLater(request, retryAfterNanos, e);
+            } else if (code != null && code >= 500) {
+                retryLater(request, backoffNanos(request.attempt), e);
+            } else {
+                fail(request, e);
+            }
+        } catch (TelegramApiException e) {
+            // Сетевые ошибки без ответа Telegram: неизвестно, выполнен ли запрос
+            outcome = "io_error";
+            if (idempotentMethods.contains(request.method.getMethod().toLowerCase(Locale.ROOT))) {
+                retryLater(request, backoffNanos(request.attempt), e);
+            } else {
+                fail(request, e);
+            }
+        } catch (RuntimeException e) {
+            fail(request, e);
+        } finally {
+            // Время самого вызова execute, без ожидания в ведрах и между повторами
+            meterRegistry.timer("telegram.execute", "method", request.method.getMethod(), "outcome", outcome)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <T extends Serializable> void retryLater(SendRequest<T> request, long delayNanos, Exception cause) {
+        if (request.attempt >= maxAttempts) {
+            fail(request, cause);
+            return;
+        }
+        retryCounter.increment();
+        log.debug("Retrying {} to {} in {} ms (attempt {})", request.method.getMethod(), request.chatId,
+                TimeUnit.NANOSECONDS.toMillis(delayNanos), request.attempt);
+        schedule(request, () -> acquireAndSend(request), delayNanos);
+    }
+
+    private void fail(SendRequest<?> request, Exception cause) {
+        failedCounter.increment();
+        log.warn("Failed to send {} to {} after {} attempt(s): {}", request.method.getMethod(), request.chatId,
+                request.attempt, cause.getMessage());
+        request.future.completeExceptionally(cause);
+    }
+
+    // Несколько 429 от разных запросов за секунду — похоже на общий лимит бота, а не на лимит одного чата
+    private boolean isGlobalFlood() {
+        long now = System.nanoTime();
+        long windowStart = floodWindowStart.get();
+        if (now - windowStart > TimeUnit.SECONDS.toNanos(1) && floodWindowStart.compareAndSet(windowStart, now)) {
+            floodWindowCount.set(0);
+        }
+        return floodWindowCount.incrementAndGet() >= globalFloodThreshold;
+    }
+
+    private long backoffNanos(int attempt) {
+        long exponential = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 16));
+        double jitter = 0.5 + ThreadLocalRandom.current().nextDouble();
+        return TimeUnit.MILLISECONDS.toNanos((long) (exponential * jitter));
+    }
+
+    private static int retryAfterSeconds(TelegramApiRequestException e) {
+        if (e.getParameters() != null && e.getParameters().getRetryAfter() != null) {
+            return e.getParameters().getRetryAfter();
+        }
+        return 1;
+    }
+
+    private static final class SendRequest<T extends Serializable> {
+        private final BotApiMethod<T> method;
+        private final String chatId;
+        private final Priority priority;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long createdAt = System.nanoTime();
+        private int attempt;
+
+        private SendRequest(BotApiMethod<T> method, String chatId, Priority priority) {
+            this.method = method;
+            this.chatId = chatId;
+            this.priority = priority;
+        }
+    }
+}
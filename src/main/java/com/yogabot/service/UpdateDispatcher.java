@@ -0,0 +1,170 @@
+package com.yogabot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Полосный диспетчер: chatId хэшируется на одну из фиксированных последовательных полос.
+// Обновления одного чата выполняются строго по порядку, разные полосы работают параллельно на общем пуле.
+@Component
+public class UpdateDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+    // Сколько задач полоса выполняет подряд, прежде чем уступить поток другим полосам
+    private static final int DRAIN_BATCH = 32;
+
+    // Пауза перед повторной постановкой полосы, если пул отказал
+    private static final long RESCHEDULE_DELAY_MS = 50;
+
+    @Autowired
+    @Qualifier("webhookExecutor")
+    private ExecutorService webhookExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${webhook.dispatcher.lanes:16}")
+    private int laneCount;
+
+    @Value("${webhook.dispatcher.lane-capacity:256}")
+    private int laneCapacity;
+
+    private Lane[] lanes;
+
+    private ScheduledExecutorService rescheduler;
+
+    @PostConstruct
+    public void init() {
+        rescheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "webhook-lane-rescheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i);
+        }
+        log.info("Update dispatcher started with {} lanes (capacity {} each)", laneCount, laneCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rescheduler.shutdownNow();
+    }
+
+    // Возвращает false, если полоса этого чата переполнена
+    public boolean dispatch(long chatId, Runnable task) {
+        return lanes[laneFor(chatId)].offer(task);
+    }
+
+    public int laneFor(long chatId) {
+        int hash = Long.hashCode(chatId);
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, lanes.length);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    private final class Lane implements Runnable {
+
+        private final ConcurrentLinkedQueue<Task> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Timer latency;
+
+        private Lane(int index) {
+            String lane = String.valueOf(index);
+            this.latency = Timer.builder("webhook.lane.latency")
+                    .tag("lane", lane)
+                    .description("Time from dispatch to completion of an update in a lane")
+                    .register(meterRegistry);
+            meterRegistry.gauge("webhook.lane.depth", Tags.of("lane", lane), size);
+        }
+
+        boolean offer(Runnable runnable) {
+            if (size.incrementAndGet() > laneCapacity) {
+                size.decrementAndGet();
+                return false;
+            }
+            tasks.offer(new Task(runnable, System.nanoTime()));
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                submit();
+            }
+        }
+
+        // Полоса уже захвачена (scheduled = true). При отказе пула задачи остаются в полосе и она ставится позже:
+        // выполнять ее в вызывающем потоке нельзя — это поток запроса вебхука. Новые обновления тем временем
+        // копятся в полосе до lane-capacity, дальше вебхук отвечает 429.
+        private void submit() {
+            try {
+                webhookExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                try {
+                    rescheduler.schedule(this::submit, RESCHEDULE_DELAY_MS, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException stopped) {
+                    // Приложение останавливается
+                    log.warn("Dispatcher lane dropped {} queued updates on shutdown", size.get());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Task task;
+                int processed = 0;
+                while (processed < DRAIN_BATCH && (task = tasks.poll()) != null) {
+                    size.decrementAndGet();
+                    try {
+                        task.runnable.run();
+                    } catch (Exception e) {
+                        log.error("Error in dispatcher lane task", e);
+                    } finally {
+                        latency.record(System.nanoTime() - task.enqueuedAt, TimeUnit.NANOSECONDS);
+                    }
+                    processed++;
+                }
+            } finally {
+                scheduled.set(false);
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+
+    private static final class Task {
+        private final Runnable runnable;
+        private final long enqueuedAt;
+
+        private Task(Runnable runnable, long enqueuedAt) {
+            this.runnable = runnable;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
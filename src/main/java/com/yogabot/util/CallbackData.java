@@ -0,0 +1,219 @@
+package com.yogabot.util;
+
+import java.time.LocalDate;
+
+// Компактный формат callback_data (лимит Telegram — 64 байта): символ версии, код операции и поля без разделителей,
+// кроме ':' перед датой. Примеры: "2Sm42:20250304" — запись на утро, занятие 42; "2E20250304" — изменить день; "2M" — в меню.
+// Разбор идет по индексам, без split и регулярных выражений. Старый текстовый формат (subscribe_morning_42_20250304,
+// edit_day_2025-03-04, ...) тоже разбирается: такие кнопки остаются в уже отправленных сообщениях.
+public final class CallbackData {
+
+    public static final int MAX_LENGTH = 64;
+
+    private static final char VERSION = '2';
+
+    public enum Op {
+        SUBSCRIBE('S'),
+        UNSUBSCRIBE('U'),
+        EDIT_DAY('E'),
+        DELETE_DAY('D'),
+        CONFIRM_DELETE('C'),
+        CANCEL_DELETE('X'),
+        BACK_TO_EDIT('B'),
+        BACK_TO_MAIN('M');
+
+        private static final Op[] BY_CODE = new Op[128];
+        static {
+            for (Op op : values()) {
+                BY_CODE[op.code] = op;
+            }
+        }
+
+        private final char code;
+        private final String tag;
+
+        Op(char code) {
+            this.code = code;
+            this.tag = name().toLowerCase();
+        }
+
+        // Имя операции в старом формате, оно же тег метрик
+        public String tag() { return tag; }
+    }
+
+    private final Op op;
+    private final String classType;
+    private final long scheduleId;
+    private final LocalDate date;
+
+    private CallbackData(Op op, String classType, long scheduleId, LocalDate date) {
+        this.op = op;
+        this.classType = classType;
+        this.scheduleId = scheduleId;
+        this.date = date;
+    }
+
+    public Op getOp() { return op; }
+
+    // MORNING / EVENING для записи и отмены, иначе null
+    public String getClassType() { return classType; }
+
+    public long getScheduleId() { return scheduleId; }
+
+    // null, если дата не передана (старые кнопки записи без даты)
+    public LocalDate getDate() { return date; }
+
+    // --- Кодирование ---
+
+    public static String subscribe(String classType, long scheduleId, LocalDate date) {
+        return subscription(Op.SUBSCRIBE, classType, scheduleId, date);
+    }
+
+    public static String unsubscribe(String classType, long scheduleId, LocalDate date) {
+        return subscription(Op.UNSUBSCRIBE, classType, scheduleId, date);
+    }
+
+    public static String day(Op op, LocalDate date) {
+        StringBuilder sb = new StringBuilder(10).append(VERSION).append(op.code);
+        return appendBasicDate(sb, date).toString();
+    }
+
+    public static String of(Op op) {
+        return new String(new char[]{VERSION, op.code});
+    }
+
+    private static String subscription(Op op, String classType, long scheduleId, LocalDate date) {
+        StringBuilder sb = new StringBuilder(24).append(VERSION).append(op.code)
+                .append("EVENING".equalsIgnoreCase(classType) ? 'e' : 'm')
+                .append(scheduleId);
+        if (date != null) {
+            appendBasicDate(sb.append(':'), date);
+        }
+        return sb.toString();
+    }
+
+    private static StringBuilder appendBasicDate(StringBuilder sb, LocalDate date) {
+        int month = date.getMonthValue();
+        int day = date.getDayOfMonth();
+        return sb.append(date.getYear())
+                .append((char) ('0' + month / 10)).append((char) ('0' + month % 10))
+                .append((char) ('0' + day / 10)).append((char) ('0' + day % 10));
+    }
+
+    // --- Разбор ---
+
+    // null — данные не распознаны
+    public static CallbackData decode(String data) {
+        if (data == null || data.length() < 2 || data.length() > MAX_LENGTH) {
+            return null;
+        }
+        try {
+            return data.charAt(0) == VERSION ? decodeCompact(data) : decodeLegacy(data);
+        } catch (RuntimeException e) {
+            // Неверная дата или число
+            return null;
+        }
+    }
+
+    private static CallbackData decodeCompact(String data) {
+        char code = data.charAt(1);
+        Op op = code < 128 ? Op.BY_CODE[code] : null;
+        if (op == null) return null;
+
+        switch (op) {
+            case SUBSCRIBE:
+            case UNSUBSCRIBE: {
+                if (data.length() < 4) return null;
+                char type = data.charAt(2);
+                if (type != 'm' && type != 'e') return null;
+                int colon = data.indexOf(':', 3);
+                int idEnd = colon < 0 ? data.length() : colon;
+                long id = parseLong(data, 3, idEnd);
+                LocalDate date = colon < 0 ? null : parseBasicDate(data, colon + 1);
+                return new CallbackData(op, type == 'm' ? "MORNING" : "EVENING", id, date);
+            }
+            case EDIT_DAY:
+            case DELETE_DAY:
+            case CONFIRM_DELETE:
+                return new CallbackData(op, null, -1, parseBasicDate(data, 2));
+            default:
+                return data.length() == 2 ? new CallbackData(op, null, -1, null) : null;
+        }
+    }
+
+    // Старые кнопки: выбор по первой букве и regionMatches вместо цепочки startsWith по всем префиксам
+    private static CallbackData decodeLegacy(String data) {
+        switch (data.charAt(0)) {
+            case 's':
+                return data.startsWith("subscribe_") ? legacySubscription(Op.SUBSCRIBE, data, 10) : null;
+            case 'u':
+                return data.startsWith("unsubscribe_") ? legacySubscription(Op.UNSUBSCRIBE, data, 12) : null;
+            case 'e':
+                return data.startsWith("edit_day_") ? legacyDay(Op.EDIT_DAY, data, 9) : null;
+            case 'd':
+                return data.startsWith("delete_day_") ? legacyDay(Op.DELETE_DAY, data, 11) : null;
+            case 'c':
+                if (data.startsWith("confirm_delete_")) return legacyDay(Op.CONFIRM_DELETE, data, 15);
+                return data.equals("cancel_delete") ? new CallbackData(Op.CANCEL_DELETE, null, -1, null) : null;
+            case 'b':
+                if (data.equals("back_to_edit")) return new CallbackData(Op.BACK_TO_EDIT, null, -1, null);
+                return data.equals("back_to_main") ? new CallbackData(Op.BACK_TO_MAIN, null, -1, null) : null;
+            default:
+                return null;
+        }
+    }
+
+    // <type>_<id>[_<yyyyMMdd>]
+    private static CallbackData legacySubscription(Op op, String data, int from) {
+        String classType;
+        if (data.regionMatches(true, from, "morning_", 0, 8)) {
+            classType = "MORNING";
+        } else if (data.regionMatches(true, from, "evening_", 0, 8)) {
+            classType = "EVENING";
+        } else {
+            return null;
+        }
+        int idStart = from + 8;
+        int underscore = data.indexOf('_', idStart);
+        long id = parseLong(data, idStart, underscore < 0 ? data.length() : underscore);
+        LocalDate date = underscore < 0 ? null : parseBasicDate(data, underscore + 1);
+        return new CallbackData(op, classType, id, date);
+    }
+
+    // <prefix>yyyy-MM-dd
+    private static CallbackData legacyDay(Op op, String data, int from) {
+        if (data.length() != from + 10 || data.charAt(from + 4) != '-' || data.charAt(from + 7) != '-') {
+            return null;
+        }
+        LocalDate date = LocalDate.of(parseInt(data, from, from + 4), parseInt(data, from + 5, from + 7),
+                parseInt(data, from + 8, from + 10));
+        return new CallbackData(op, null, -1, date);
+    }
+
+    private static LocalDate parseBasicDate(String data, int from) {
+        if (data.length() != from + 8) {
+            throw new IllegalArgumentException("Bad date in callback: " + data);
+        }
+        return LocalDate.of(parseInt(data, from, from + 4), parseInt(data, from + 4, from + 6),
+                parseInt(data, from + 6, from + 8));
+    }
+
+    private static int parseInt(String data, int from, int to) {
+        return (int) parseLong(data, from, to);
+    }
+
+    private static long parseLong(String data, int from, int to) {
+        if (from >= to || to - from > 18) {
+            throw new IllegalArgumentException("Bad number in callback: " + data);
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = data.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Bad number in callback: " + data);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
\ No newline at end of file
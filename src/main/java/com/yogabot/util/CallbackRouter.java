@@ -0,0 +1,29 @@
+package com.yogabot.util;
+
+// Таблица обработчиков колбэков, индекс — код операции CallbackData.Op.
+// Новый колбэк добавляется регистрацией, а не еще одной веткой if/else; поиск обработчика — одно обращение к массиву.
+public class CallbackRouter<C, R> {
+
+    @FunctionalInterface
+    public interface Handler<C, R> {
+        R handle(CallbackData data, C context);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Handler<C, R>[] handlers = new Handler[CallbackData.Op.values().length];
+
+    public CallbackRouter<C, R> on(CallbackData.Op op, Handler<C, R> handler) {
+        if (handlers[op.ordinal()] != null) {
+            throw new IllegalStateException("Handler for " + op + " is already registered");
+        }
+        handlers[op.ordinal()] = handler;
+        return this;
+    }
+
+    // null — данные не распознаны или для операции нет обработчика
+    public R route(CallbackData data, C context) {
+        if (data == null) return null;
+        Handler<C, R> handler = handlers[data.getOp().ordinal()];
+        return handler != null ? handler.handle(data, context) : null;
+    }
+}
\ No newline at end of file
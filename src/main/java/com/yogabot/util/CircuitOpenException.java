@@ -0,0 +1,9 @@
+package com.yogabot.util;
+
+// Запрос не выполнялся: автомат защиты эндпоинта открыт
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String endpoint) {
+        super("Circuit breaker is open for " + endpoint);
+    }
+}
\ No newline at end of file
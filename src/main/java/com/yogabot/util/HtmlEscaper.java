@@ -0,0 +1,32 @@
+package com.yogabot.util;
+
+// Экранирование текста для parse_mode=HTML за один проход, сразу в буфер сообщения.
+// Строка без спецсимволов дописывается целиком без промежуточных копий.
+public final class HtmlEscaper {
+
+    private HtmlEscaper() {}
+
+    public static StringBuilder appendEscaped(StringBuilder sb, String text) {
+        if (text == null) return sb;
+
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            String replacement;
+            switch (text.charAt(i)) {
+                case '&': replacement = "&amp;"; break;
+                case '<': replacement = "&lt;"; break;
+                case '>': replacement = "&gt;"; break;
+                default: continue;
+            }
+            sb.append(text, start, i).append(replacement);
+            start = i + 1;
+        }
+        return sb.append(text, start, length);
+    }
+
+    public static String escape(String text) {
+        if (text == null) return "";
+        return appendEscaped(new StringBuilder(text.length() + 16), text).toString();
+    }
+}
\ No newline at end of file
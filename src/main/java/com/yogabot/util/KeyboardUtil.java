@@ -28,6 +28,10 @@ public class KeyboardUtil {
             row2.add("✏️ Редактирование");
             row2.add("🔔 Уведомления вкл/выкл");
             keyboard.add(row2);
+
+            KeyboardRow row3 = new KeyboardRow();
+            row3.add("📊 Записи на неделю");
+            keyboard.add(row3);
         }
 
         keyboardMarkup.setKeyboard(keyboard);
@@ -0,0 +1,83 @@
+package com.yogabot.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Скользящая гистограмма задержек одного эндпоинта. Корзины фиксированные (от 1 мс до 30 с),
+// окно из двух половин: текущая и предыдущая, половины меняются каждые windowMillis / 2.
+// Запись — один инкремент атомарного счетчика, перцентиль — проход по ~30 корзинам.
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS_MS = {
+            1, 2, 3, 5, 7, 10, 15, 20, 30, 50, 75, 100, 150, 200, 300, 500, 750,
+            1000, 1500, 2000, 3000, 5000, 7500, 10000, 15000, 30000
+    };
+
+    private final long halfWindowNanos;
+
+    private volatile AtomicLongArray current = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private volatile AtomicLongArray previous = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private volatile long rotatedAt = System.nanoTime();
+
+    public LatencyHistogram(long windowMillis) {
+        this.halfWindowNanos = windowMillis * 1_000_000L / 2;
+    }
+
+    public void record(long nanos) {
+        rotateIfNeeded();
+        long millis = nanos / 1_000_000L;
+        int bucket = 0;
+        while (bucket < BOUNDS_MS.length && millis > BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        current.incrementAndGet(bucket);
+    }
+
+    public long count() {
+        rotateIfNeeded();
+        long total = 0;
+        for (int i = 0; i <= BOUNDS_MS.length; i++) {
+            total += current.get(i) + previous.get(i);
+        }
+        return total;
+    }
+
+    // Верхняя граница корзины, в которую попадает перцентиль (консервативная оценка); -1 — нет данных
+    public long percentileMillis(double percentile) {
+        rotateIfNeeded();
+        long[] counts = new long[BOUNDS_MS.length + 1];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = current.get(i) + previous.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return -1;
+        }
+
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return BOUNDS_MS[i];
+            }
+        }
+        return BOUNDS_MS[BOUNDS_MS.length - 1] * 2;
+    }
+
+    private void rotateIfNeeded() {
+        long now = System.nanoTime();
+        if (now - rotatedAt < halfWindowNanos) {
+            return;
+        }
+        synchronized (this) {
+            if (now - rotatedAt < halfWindowNanos) {
+                return;
+            }
+            // Простой дольше целого окна — обе половины устарели
+            previous = now - rotatedAt >= 2 * halfWindowNanos ? new AtomicLongArray(BOUNDS_MS.length + 1) : current;
+            current = new AtomicLongArray(BOUNDS_MS.length + 1);
+            rotatedAt = now;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.yogabot.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Шаблон сообщения, заранее разобранный на сегменты: литералы и подстановки вида {0} или {0:формат}.
+// Форматы: html — экранированный текст, day — название дня недели, dm — dd.MM, dmy — dd.MM.yyyy, time — HH:mm.
+// Рендеринг дописывает сегменты в переданный буфер без промежуточных строк; render() заводит свой буфер,
+// заранее рассчитанный по размеру шаблона, поэтому вложенные рендеры не портят друг другу вывод.
+public final class MessageTemplate {
+
+    // Запас на одну подстановку при оценке размера буфера
+    private static final int ARG_SIZE_HINT = 16;
+
+    private enum Format { RAW, HTML, DAY, DATE, DATE_YEAR, TIME }
+
+    private final String[] literals;
+    private final int[] args;
+    private final Format[] formats;
+    private final int sizeHint;
+
+    private MessageTemplate(String[] literals, int[] args, Format[] formats) {
+        this.literals = literals;
+        this.args = args;
+        this.formats = formats;
+
+        int size = args.length * ARG_SIZE_HINT;
+        for (String literal : literals) {
+            size += literal.length();
+        }
+        this.sizeHint = size;
+    }
+
+    public static MessageTemplate compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> args = new ArrayList<>();
+        List<Format> formats = new ArrayList<>();
+
+        int start = 0;
+        while (true) {
+            int open = pattern.indexOf('{', start);
+            if (open < 0) break;
+            int close = pattern.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in template: " + pattern);
+            }
+
+            String placeholder = pattern.substring(open + 1, close);
+            int colon = placeholder.indexOf(':');
+            literals.add(pattern.substring(start, open));
+            args.add(Integer.parseInt(colon < 0 ? placeholder : placeholder.substring(0, colon)));
+            formats.add(colon < 0 ? Format.RAW : parseFormat(placeholder.substring(colon + 1)));
+            start = close + 1;
+        }
+        literals.add(pattern.substring(start));
+
+        int[] argIndexes = new int[args.size()];
+        for (int i = 0; i < argIndexes.length; i++) {
+            if (args.get(i) > 2) {
+                throw new IllegalArgumentException("Only {0}..{2} are supported: " + pattern);
+            }
+            argIndexes[i] = args.get(i);
+        }
+        return new MessageTemplate(literals.toArray(new String[0]), argIndexes, formats.toArray(new Format[0]));
+    }
+
+    public StringBuilder appendTo(StringBuilder sb, Object a0) {
+        return appendTo(sb, a0, null, null);
+    }
+
+    public StringBuilder appendTo(StringBuilder sb, Object a0, Object a1) {
+        return appendTo(sb, a0, a1, null);
+    }
+
+    public StringBuilder appendTo(StringBuilder sb, Object a0, Object a1, Object a2) {
+        for (int i = 0; i < args.length; i++) {
+            sb.append(literals[i]);
+            Object value = args[i] == 0 ? a0 : args[i] == 1 ? a1 : a2;
+            appendValue(sb, formats[i], value);
+        }
+        return sb.append(literals[args.length]);
+    }
+
+    public String render(Object a0) {
+        return appendTo(new StringBuilder(sizeHint), a0, null, null).toString();
+    }
+
+    public String render(Object a0, Object a1, Object a2) {
+        return appendTo(new StringBuilder(sizeHint), a0, a1, a2).toString();
+    }
+
+    private static void appendValue(StringBuilder sb, Format format, Object value) {
+        if (value == null) return;
+
+        switch (format) {
+            case HTML:
+                HtmlEscaper.appendEscaped(sb, value.toString());
+                break;
+            case DAY:
+                sb.append(RenderFormats.dayName(value instanceof LocalDate
+                        ? ((LocalDate) value).getDayOfWeek() : (DayOfWeek) value));
+                break;
+            case DATE:
+                RenderFormats.appendDayMonth(sb, (LocalDate) value);
+                break;
+            case DATE_YEAR:
+                RenderFormats.appendDayMonthYear(sb, (LocalDate) value);
+                break;
+            case TIME:
+                RenderFormats.appendTime(sb, (LocalTime) value);
+                break;
+            default:
+                if (value instanceof CharSequence) {
+                    sb.append((CharSequence) value);
+                } else if (value instanceof Integer) {
+                    sb.append(((Integer) value).intValue());
+                } else {
+                    sb.append(value);
+                }
+        }
+    }
+
+    private static Format parseFormat(String name) {
+        switch (name) {
+            case "html": return Format.HTML;
+            case "day": return Format.DAY;
+            case "dm": return Format.DATE;
+            case "dmy": return Format.DATE_YEAR;
+            case "time": return Format.TIME;
+            default: throw new IllegalArgumentException("Unknown template format: " + name);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.yogabot.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// Общие форматы дат и времени для сообщений бота. Пишут цифры прямо в буфер,
+// без DateTimeFormatter и промежуточных строк.
+public final class RenderFormats {
+
+    private static final String[] DAY_NAMES = {
+            "Понедельник", "Вторник", "Среда", "Четверг", "Пятница", "Суббота", "Воскресенье"
+    };
+
+    private RenderFormats() {}
+
+    public static String dayName(DayOfWeek dayOfWeek) {
+        return dayOfWeek != null ? DAY_NAMES[dayOfWeek.ordinal()] : "";
+    }
+
+    // dd.MM
+    public static StringBuilder appendDayMonth(StringBuilder sb, LocalDate date) {
+        appendTwoDigits(sb, date.getDayOfMonth());
+        sb.append('.');
+        return appendTwoDigits(sb, date.getMonthValue());
+    }
+
+    // dd.MM.yyyy
+    public static StringBuilder appendDayMonthYear(StringBuilder sb, LocalDate date) {
+        return appendDayMonth(sb, date).append('.').append(date.getYear());
+    }
+
+    // Тот же вид, что у LocalTime.toString(): HH:mm, секунды — только если они есть
+    public static StringBuilder appendTime(StringBuilder sb, LocalTime time) {
+        if (time.getNano() != 0) {
+            return sb.append(time);
+        }
+        appendTwoDigits(sb, time.getHour());
+        sb.append(':');
+        appendTwoDigits(sb, time.getMinute());
+        if (time.getSecond() != 0) {
+            sb.append(':');
+            appendTwoDigits(sb, time.getSecond());
+        }
+        return sb;
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
\ No newline at end of file
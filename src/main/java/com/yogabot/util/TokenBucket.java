@@ -0,0 +1,53 @@
+package com.yogabot.util;
+
+// Ведро токенов для ограничения частоты отправки.
+// reserve() не блокирует: токен занимается сразу (баланс может уйти в минус),
+// а вызывающий получает время, которое нужно выждать до его появления.
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double ratePerSecond, double burst) {
+        this.capacity = burst;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    // Занимает токен и возвращает задержку в наносекундах (0 — можно отправлять сразу)
+    public synchronized long reserve() {
+        refill(System.nanoTime());
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    public synchronized boolean tryAcquire() {
+        refill(System.nanoTime());
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    // Запрещает выдачу токенов на nanos (например, после ответа 429 с retry_after)
+    public synchronized void pause(long nanos) {
+        refill(System.nanoTime());
+        tokens = Math.min(tokens, -nanos * tokensPerNano);
+    }
+
+    // Ведро полное — им давно не пользовались, его можно выбросить
+    public synchronized boolean isFull() {
+        refill(System.nanoTime());
+        return tokens >= capacity;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
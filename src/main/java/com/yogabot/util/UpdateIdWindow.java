@@ -0,0 +1,78 @@
+package com.yogabot.util;
+
+import java.util.Arrays;
+
+// Окно недавно обработанных update_id: кольцевая битовая карта фиксированного размера, привязанная к наибольшему id.
+// Бит id хранится в позиции id mod size; при сдвиге максимума вперед биты пройденных позиций очищаются.
+// Память постоянна (size / 8 байт), проверка и отметка — без выделений.
+// Id старше окна считаются новыми: лучше обработать запоздавшее обновление дважды, чем потерять его.
+public class UpdateIdWindow {
+
+    private final long[] words;
+    private final int mask;
+
+    private long highest = Long.MIN_VALUE;
+
+    // size округляется вверх до степени двойки, не меньше 64
+    public UpdateIdWindow(int size) {
+        int bits = size <= 64 ? 64 : Integer.highestOneBit(size - 1) << 1;
+        this.words = new long[bits >>> 6];
+        this.mask = bits - 1;
+    }
+
+    // true — id встречается впервые и теперь отмечен; false — повторная доставка
+    public synchronized boolean markIfNew(long id) {
+        if (highest == Long.MIN_VALUE) {
+            highest = id;
+            set(id);
+            return true;
+        }
+        if (id > highest) {
+            advanceTo(id);
+            set(id);
+            return true;
+        }
+        if (highest - id > mask) {
+            return true;
+        }
+        if (isSet(id)) {
+            return false;
+        }
+        set(id);
+        return true;
+    }
+
+    // Снимает отметку, например если обновление не удалось принять и Telegram доставит его снова
+    public synchronized void forget(long id) {
+        if (highest != Long.MIN_VALUE && id <= highest && highest - id <= mask) {
+            int bit = (int) (id & mask);
+            words[bit >>> 6] &= ~(1L << bit);
+        }
+    }
+
+    public int size() {
+        return mask + 1;
+    }
+
+    private void advanceTo(long id) {
+        if (id - highest > mask) {
+            Arrays.fill(words, 0L);
+        } else {
+            for (long cleared = highest + 1; cleared <= id; cleared++) {
+                int bit = (int) (cleared & mask);
+                words[bit >>> 6] &= ~(1L << bit);
+            }
+        }
+        highest = id;
+    }
+
+    private boolean isSet(long id) {
+        int bit = (int) (id & mask);
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void set(long id) {
+        int bit = (int) (id & mask);
+        words[bit >>> 6] |= 1L << bit;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,211 @@
+package com.yogabot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubscriptionJournalTest {
+
+    // Раскладка файла из SubscriptionJournal: заголовок 16 байт, запись 38 байт, CRC в последних 4
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 38;
+    // Минимальный файл (size-kb=0) вмещает 15 записей до уплотнения
+    private static final int CAPACITY = 15;
+
+    private static final LocalDate DATE = LocalDate.of(2025, 3, 4);
+
+    @TempDir
+    Path dir;
+
+    private SubscriptionJournal journal;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void recoversPendingEntriesAfterRestart() throws IOException {
+        journal = open();
+        journal.append(SubscriptionJournal.Op.SUBSCRIBE, 1, 10, "MORNING", DATE);
+        journal.append(SubscriptionJournal.Op.UNSUBSCRIBE, 2, 11, "EVENING", null);
+        journal.append(SubscriptionJournal.Op.SUBSCRIBE, 3, 12, "MORNING", DATE);
+        journal.commit(1);
+        journal.close();
+
+        journal = open();
+        List<SubscriptionJournal.Entry> pending = journal.peek(10);
+        assertEquals(2, pending.size());
+        assertEquals(SubscriptionJournal.Op.UNSUBSCRIBE, pending.get(0).getOp());
+        assertEquals(2, pending.get(0).getTelegramId());
+        assertEquals(11, pending.get(0).getScheduleId());
+        assertEquals("EVENING", pending.get(0).getClassType());
+        assertNull(pending.get(0).getClassDate());
+        assertEquals(3, pending.get(1).getTelegramId());
+        assertEquals(DATE, pending.get(1).getClassDate());
+    }
+
+    @Test
+    void dropsTornRecordAndKeepsEverythingBeforeIt() throws IOException {
+        journal = open();
+        for (int i = 1; i <= 3; i++) {
+            journal.append(SubscriptionJournal.Op.SUBSCRIBE, i, 10, "MORNING", DATE);
+        }
+        journal.close();
+        journal = null;
+
+        // Сбой посреди записи: данные третьей записи изменены, а CRC остался от прежнего содержимого
+        corrupt(HEADER_SIZE + 2 * RECORD_SIZE + 5, new byte[]{0x7F});
+
+        journal = open();
+        List<SubscriptionJournal.Entry> pending = journal.peek(10);
+        assertEquals(2, pending.size());
+        assertEquals(1, pending.get(0).getTelegramId());
+        assertEquals(2, pending.get(1).getTelegramId());
+    }
+
+    @Test
+    void dropsPartialRecordAndAppendsOverIt() throws IOException {
+        journal = open();
+        journal.append(SubscriptionJournal.Op.SUBSCRIBE, 1, 10, "MORNING", DATE);
+        journal.append(SubscriptionJournal.Op.SUBSCRIBE, 2, 10, "MORNING", DATE);
+        journal.close();
+        journal = null;
+
+        // Запись оборвалась: до диска дошли только первые байты второй записи
+        corrupt(HEADER_SIZE + RECORD_SIZE + 10, new byte[RECORD_SIZE - 10]);
+
+        journal = open();
+        assertEquals(1, journal.pendingCount());
+
+        // Новая запись ложится на место оборванной и переживает следующий перезапуск
+        assertTrue(journal.append(SubscriptionJournal.Op.UNSUBSCRIBE, 3, 10, "EVENING", DATE));
+        journal.close();
+
+        journal = open();
+        List<SubscriptionJournal.Entry> pending = journal.peek(10);
+        assertEquals(2, pending.size());
+        assertEquals(1, pending.get(0).getTelegramId());
+        assertEquals(3, pending.get(1).getTelegramId());
+        assertEquals(SubscriptionJournal.Op.UNSUBSCRIBE, pending.get(1).getOp());
+    }
+
+    @Test
+    void recoversAfterCompaction() throws IOException {
+        journal = open();
+        for (int i = 1; i <= CAPACITY; i++) {
+            assertTrue(journal.append(SubscriptionJournal.Op.SUBSCRIBE, i, 10, "MORNING", DATE));
+        }
+        journal.commit(10);
+
+        // Места в конце нет: добавление уплотняет журнал, перенося 5 неотправленных записей в начало
+        for (int i = CAPACITY + 1; i <= CAPACITY + 3; i++) {
+            assertTrue(journal.append(SubscriptionJournal.Op.SUBSCRIBE, i, 10, "MORNING", DATE));
+        }
+        journal.close();
+
+        journal = open();
+        List<SubscriptionJournal.Entry> pending = journal.peek(100);
+        assertEquals(8, pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            assertEquals(11 + i, pending.get(i).getTelegramId());
+        }
+    }
+
+    @Test
+    void commitAfterCompactionCountsEntriesNotPositions() throws IOException {
+        journal = open();
+        for (int i = 1; i <= CAPACITY; i++) {
+            journal.append(SubscriptionJournal.Op.SUBSCRIBE, i, 10, "MORNING", DATE);
+        }
+        journal.commit(10);
+        List<SubscriptionJournal.Entry> batch = journal.peek(3);
+
+        // Уплотнение между peek и commit сдвигает записи в файле
+        journal.append(SubscriptionJournal.Op.SUBSCRIBE, 100, 10, "MORNING", DATE);
+        journal.commit(batch.size());
+        journal.close();
+
+        journal = open();
+        List<SubscriptionJournal.Entry> pending = journal.peek(100);
+        assertEquals(3, pending.size());
+        assertEquals(14, pending.get(0).getTelegramId());
+        assertEquals(15, pending.get(1).getTelegramId());
+        assertEquals(100, pending.get(2).getTelegramId());
+    }
+
+    @Test
+    void indexKeepsLastPendingOpPerUserUntilAllItsEntriesAreCommitted() throws IOException {
+        journal = open();
+        journal.append(SubscriptionJournal.Op.SUBSCRIBE, 1, 10, "MORNING", DATE);
+        journal.append(SubscriptionJournal.Op.SUBSCRIBE, 2, 10, "EVENING", DATE);
+        journal.append(SubscriptionJournal.Op.UNSUBSCRIBE, 1, 10, "MORNING", null);
+
+        Map<Long, SubscriptionJournal.Entry> morning = journal.pendingFor(10, "MORNING");
+        assertEquals(1, morning.size());
+        assertEquals(SubscriptionJournal.Op.UNSUBSCRIBE, morning.get(1L).getOp());
+        assertEquals(1, journal.pendingFor(10, "EVENING").size());
+        assertTrue(journal.pendingFor(11, "MORNING").isEmpty());
+        assertEquals(2, journal.pendingLastOps().size());
+
+        // Отправлена только первая запись пользователя 1: отмена еще в журнале и должна остаться в индексе
+        journal.commit(1);
+        assertEquals(SubscriptionJournal.Op.UNSUBSCRIBE, journal.pendingFor(10, "MORNING").get(1L).getOp());
+
+        journal.commit(2);
+        assertTrue(journal.pendingFor(10, "MORNING").isEmpty());
+        assertTrue(journal.pendingLastOps().isEmpty());
+    }
+
+    @Test
+    void indexIsRebuiltOnRecoveryAndSurvivesCompaction() throws IOException {
+        journal = open();
+        for (int i = 1; i <= CAPACITY; i++) {
+            journal.append(SubscriptionJournal.Op.SUBSCRIBE, i, 10, "MORNING", DATE);
+        }
+        journal.commit(10);
+        journal.append(SubscriptionJournal.Op.UNSUBSCRIBE, 15, 10, "MORNING", null);
+        journal.close();
+
+        journal = open();
+        Map<Long, SubscriptionJournal.Entry> pending = journal.pendingFor(10, "MORNING");
+        assertEquals(5, pending.size());
+        assertFalse(pending.containsKey(10L));
+        assertEquals(SubscriptionJournal.Op.SUBSCRIBE, pending.get(11L).getOp());
+        assertEquals(SubscriptionJournal.Op.UNSUBSCRIBE, pending.get(15L).getOp());
+    }
+
+    private SubscriptionJournal open() {
+        SubscriptionJournal opened = new SubscriptionJournal();
+        ReflectionTestUtils.setField(opened, "path", dir.resolve("subscriptions.journal").toString());
+        ReflectionTestUtils.setField(opened, "sizeKb", 0);
+        ReflectionTestUtils.setField(opened, "fsync", "none");
+        ReflectionTestUtils.setField(opened, "deadLetterPath", dir.resolve("subscriptions.dead").toString());
+        opened.open();
+        assertTrue(opened.isAvailable());
+        return opened;
+    }
+
+    private void corrupt(int position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve("subscriptions.journal"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+}
\ No newline at end of file
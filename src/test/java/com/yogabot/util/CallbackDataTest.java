@@ -0,0 +1,108 @@
+package com.yogabot.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CallbackDataTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 3, 4);
+
+    @Test
+    void subscriptionRoundTrip() {
+        String data = CallbackData.subscribe("MORNING", 42, DATE);
+        assertEquals("2Sm42:20250304", data);
+
+        CallbackData decoded = CallbackData.decode(data);
+        assertNotNull(decoded);
+        assertEquals(CallbackData.Op.SUBSCRIBE, decoded.getOp());
+        assertEquals("MORNING", decoded.getClassType());
+        assertEquals(42, decoded.getScheduleId());
+        assertEquals(DATE, decoded.getDate());
+
+        decoded = CallbackData.decode(CallbackData.unsubscribe("EVENING", Long.MAX_VALUE / 10, null));
+        assertNotNull(decoded);
+        assertEquals(CallbackData.Op.UNSUBSCRIBE, decoded.getOp());
+        assertEquals("EVENING", decoded.getClassType());
+        assertEquals(Long.MAX_VALUE / 10, decoded.getScheduleId());
+        assertNull(decoded.getDate());
+    }
+
+    @Test
+    void dayAndMenuRoundTrip() {
+        for (CallbackData.Op op : new CallbackData.Op[]{
+                CallbackData.Op.EDIT_DAY, CallbackData.Op.DELETE_DAY, CallbackData.Op.CONFIRM_DELETE}) {
+            CallbackData decoded = CallbackData.decode(CallbackData.day(op, DATE));
+            assertNotNull(decoded);
+            assertEquals(op, decoded.getOp());
+            assertEquals(DATE, decoded.getDate());
+        }
+        for (CallbackData.Op op : new CallbackData.Op[]{
+                CallbackData.Op.CANCEL_DELETE, CallbackData.Op.BACK_TO_EDIT, CallbackData.Op.BACK_TO_MAIN}) {
+            CallbackData decoded = CallbackData.decode(CallbackData.of(op));
+            assertNotNull(decoded);
+            assertEquals(op, decoded.getOp());
+            assertNull(decoded.getDate());
+        }
+    }
+
+    @Test
+    void compactDataFitsTelegramLimit() {
+        String data = CallbackData.unsubscribe("EVENING", Long.MAX_VALUE / 10, LocalDate.of(9999, 12, 31));
+        assertTrue(data.length() <= CallbackData.MAX_LENGTH);
+    }
+
+    @Test
+    void decodesLegacyButtons() {
+        CallbackData decoded = CallbackData.decode("subscribe_morning_42_20250304");
+        assertNotNull(decoded);
+        assertEquals(CallbackData.Op.SUBSCRIBE, decoded.getOp());
+        assertEquals("MORNING", decoded.getClassType());
+        assertEquals(42, decoded.getScheduleId());
+        assertEquals(DATE, decoded.getDate());
+
+        decoded = CallbackData.decode("unsubscribe_evening_7");
+        assertNotNull(decoded);
+        assertEquals(CallbackData.Op.UNSUBSCRIBE, decoded.getOp());
+        assertEquals("EVENING", decoded.getClassType());
+        assertEquals(7, decoded.getScheduleId());
+        assertNull(decoded.getDate());
+
+        assertEquals(DATE, CallbackData.decode("edit_day_2025-03-04").getDate());
+        assertEquals(CallbackData.Op.DELETE_DAY, CallbackData.decode("delete_day_2025-03-04").getOp());
+        assertEquals(CallbackData.Op.CONFIRM_DELETE, CallbackData.decode("confirm_delete_2025-03-04").getOp());
+        assertEquals(CallbackData.Op.CANCEL_DELETE, CallbackData.decode("cancel_delete").getOp());
+        assertEquals(CallbackData.Op.BACK_TO_EDIT, CallbackData.decode("back_to_edit").getOp());
+        assertEquals(CallbackData.Op.BACK_TO_MAIN, CallbackData.decode("back_to_main").getOp());
+    }
+
+    @Test
+    void legacyAndCompactDecodeToSameData() {
+        CallbackData legacy = CallbackData.decode("unsubscribe_evening_42_20250304");
+        CallbackData compact = CallbackData.decode(CallbackData.unsubscribe("EVENING", 42, DATE));
+        assertEquals(legacy.getOp(), compact.getOp());
+        assertEquals(legacy.getClassType(), compact.getClassType());
+        assertEquals(legacy.getScheduleId(), compact.getScheduleId());
+        assertEquals(legacy.getDate(), compact.getDate());
+    }
+
+    @Test
+    void rejectsMalformedData() {
+        assertNull(CallbackData.decode(null));
+        assertNull(CallbackData.decode("2"));
+        assertNull(CallbackData.decode("2Z"));
+        assertNull(CallbackData.decode("2Sx42"));
+        assertNull(CallbackData.decode("2Sm:20250304"));
+        assertNull(CallbackData.decode("2Sm42:20251304"));
+        assertNull(CallbackData.decode("2E2025030"));
+        assertNull(CallbackData.decode("2Mx"));
+        assertNull(CallbackData.decode("subscribe_noon_42"));
+        assertNull(CallbackData.decode("edit_day_2025/03/04"));
+        assertNull(CallbackData.decode("2Sm" + "1".repeat(CallbackData.MAX_LENGTH)));
+    }
+}
\ No newline at end of file
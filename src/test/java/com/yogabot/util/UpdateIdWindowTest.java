@@ -0,0 +1,80 @@
+package com.yogabot.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpdateIdWindowTest {
+
+    @Test
+    void roundsSizeUpToPowerOfTwo() {
+        assertEquals(64, new UpdateIdWindow(1).size());
+        assertEquals(128, new UpdateIdWindow(65).size());
+        assertEquals(1024, new UpdateIdWindow(1024).size());
+    }
+
+    @Test
+    void detectsRedeliveryInsideWindow() {
+        UpdateIdWindow window = new UpdateIdWindow(64);
+        assertTrue(window.markIfNew(100));
+        assertTrue(window.markIfNew(102));
+        assertFalse(window.markIfNew(100));
+        // Запоздавший id внутри окна еще не встречался
+        assertTrue(window.markIfNew(101));
+        assertFalse(window.markIfNew(101));
+        assertFalse(window.markIfNew(102));
+    }
+
+    @Test
+    void wrapsAroundRingWithoutStaleBits() {
+        UpdateIdWindow window = new UpdateIdWindow(64);
+        for (long id = 1; id <= 64; id++) {
+            assertTrue(window.markIfNew(id));
+        }
+        // Позиции 65..127 совпадают с 1..63 по модулю размера: старые биты очищены при сдвиге
+        for (long id = 65; id <= 127; id++) {
+            assertTrue(window.markIfNew(id));
+        }
+        for (long id = 64; id <= 127; id++) {
+            assertFalse(window.markIfNew(id));
+        }
+    }
+
+    @Test
+    void idsOlderThanWindowAreTreatedAsNew() {
+        UpdateIdWindow window = new UpdateIdWindow(64);
+        assertTrue(window.markIfNew(10));
+        assertTrue(window.markIfNew(10 + 64));
+        // 10 вышел за окно: лучше обработать дважды, чем потерять
+        assertTrue(window.markIfNew(10));
+        assertTrue(window.markIfNew(10));
+    }
+
+    @Test
+    void jumpFartherThanWindowClearsEverything() {
+        UpdateIdWindow window = new UpdateIdWindow(64);
+        for (long id = 1; id <= 64; id++) {
+            window.markIfNew(id);
+        }
+        assertTrue(window.markIfNew(1_000));
+        for (long id = 1_000 - 63; id < 1_000; id++) {
+            assertTrue(window.markIfNew(id));
+        }
+        assertFalse(window.markIfNew(1_000));
+    }
+
+    @Test
+    void forgetAllowsRedelivery() {
+        UpdateIdWindow window = new UpdateIdWindow(64);
+        assertTrue(window.markIfNew(5));
+        window.forget(5);
+        assertTrue(window.markIfNew(5));
+        assertFalse(window.markIfNew(5));
+        // Вне окна forget ничего не трогает
+        window.markIfNew(500);
+        window.forget(5);
+        assertFalse(window.markIfNew(500));
+    }
+}
\ No newline at end of file